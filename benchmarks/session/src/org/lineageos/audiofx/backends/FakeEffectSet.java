@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.backends;
+
+import android.content.Context;
+import android.media.AudioDeviceInfo;
+
+import org.lineageos.audiofx.Constants;
+import org.lineageos.audiofx.eq.EqUtils;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An EffectSet without any native effects behind it. Every call is counted and timed, and the
+ * state cache is used exactly like {@link AndroidEffects} does, so the number of simulated
+ * native calls matches what a device would see.
+ */
+public class FakeEffectSet extends EffectSet {
+
+    // calls made by the session pipeline
+    public static final int CALL_CREATE = 0;
+    public static final int CALL_RELEASE = 1;
+    public static final int CALL_SET_DEVICE = 2;
+    public static final int CALL_SET_GLOBAL_ENABLED = 3;
+    public static final int CALL_BEGIN_UPDATE = 4;
+    public static final int CALL_COMMIT_UPDATE = 5;
+    public static final int CALL_ENABLE_EQUALIZER = 6;
+    public static final int CALL_SET_EQUALIZER_LEVELS = 7;
+    public static final int CALL_SET_EQUALIZER_BAND_LEVEL = 8;
+    public static final int CALL_ENABLE_BASS_BOOST = 9;
+    public static final int CALL_SET_BASS_BOOST_STRENGTH = 10;
+    public static final int CALL_ENABLE_VIRTUALIZER = 11;
+    public static final int CALL_SET_VIRTUALIZER_STRENGTH = 12;
+    public static final int CALL_ENABLE_REVERB = 13;
+    public static final int CALL_SET_REVERB_PRESET = 14;
+    /** Calls which got past the state cache and would have reached the effect */
+    public static final int CALL_NATIVE = 15;
+
+    private static final String[] CALL_NAMES = {
+            "create", "release", "setDevice", "setGlobalEnabled", "beginUpdate", "commitUpdate",
+            "enableEqualizer", "setEqualizerLevelsDecibels", "setEqualizerBandLevel",
+            "enableBassBoost", "setBassBoostStrength", "enableVirtualizer",
+            "setVirtualizerStrength", "enableReverb", "setReverbPreset", "native"
+    };
+
+    // what a stock Android equalizer reports
+    private static final short NUM_BANDS = 5;
+    private static final short[] BAND_LEVEL_RANGE = {-1500, 1500};
+    private static final int[] CENTER_FREQS = {60000, 230000, 910000, 3600000, 14000000};
+    private static final String[] PRESET_NAMES = {
+            "Normal", "Classical", "Dance", "Flat", "Folk", "Heavy Metal", "Hip Hop", "Jazz",
+            "Pop", "Rock"
+    };
+
+    /**
+     * Call counts and the time spent in them, shared by all sets of one factory.
+     */
+    public static final class Stats {
+        private final AtomicLongArray mCalls = new AtomicLongArray(CALL_NAMES.length);
+        private final AtomicLongArray mNanos = new AtomicLongArray(CALL_NAMES.length);
+
+        void record(int call, long nanos) {
+            mCalls.incrementAndGet(call);
+            mNanos.addAndGet(call, nanos);
+        }
+
+        public long getCalls(int call) {
+            return mCalls.get(call);
+        }
+
+        public long getNanos(int call) {
+            return mNanos.get(call);
+        }
+
+        public static String getName(int call) {
+            return CALL_NAMES[call];
+        }
+
+        public static int getNumCalls() {
+            return CALL_NAMES.length;
+        }
+
+        public void reset() {
+            for (int i = 0; i < CALL_NAMES.length; i++) {
+                mCalls.set(i, 0);
+                mNanos.set(i, 0);
+            }
+        }
+
+        public void dump(PrintWriter pw, String prefix) {
+            for (int i = 0; i < CALL_NAMES.length; i++) {
+                final long calls = mCalls.get(i);
+                if (calls == 0) {
+                    continue;
+                }
+                pw.print(prefix);
+                pw.print(CALL_NAMES[i]);
+                pw.print(": calls=");
+                pw.print(calls);
+                pw.print(" avg=");
+                pw.print(mNanos.get(i) / calls / 1000);
+                pw.println("us");
+            }
+        }
+    }
+
+    /**
+     * Creates fake sets which all record into the same {@link Stats}.
+     */
+    public static class Factory implements IEffectFactory {
+        private final Stats mStats = new Stats();
+        private final long mNativeCostNanos;
+
+        /**
+         * @param nativeCostNanos how long each simulated native call spins for, zero to measure
+         *                        the pipeline alone
+         */
+        public Factory(long nativeCostNanos) {
+            mNativeCostNanos = nativeCostNanos;
+        }
+
+        public Stats getStats() {
+            return mStats;
+        }
+
+        @Override
+        public EffectSet createEffectSet(Context context, int sessionId,
+                AudioDeviceInfo currentDevice) {
+            final long start = System.nanoTime();
+            final FakeEffectSet effects =
+                    new FakeEffectSet(sessionId, currentDevice, mStats, mNativeCostNanos);
+            mStats.record(CALL_CREATE, System.nanoTime() - start);
+            return effects;
+        }
+    }
+
+    private final Stats mStats;
+    private final long mNativeCostNanos;
+    private final short[] mBandLevels = new short[NUM_BANDS];
+
+    public FakeEffectSet(int sessionId, AudioDeviceInfo deviceInfo, Stats stats,
+            long nativeCostNanos) {
+        super(sessionId, deviceInfo);
+        mStats = stats;
+        mNativeCostNanos = nativeCostNanos;
+    }
+
+    @Override
+    public void release() {
+        final long start = System.nanoTime();
+        nativeCall();
+        super.release();
+        mStats.record(CALL_RELEASE, System.nanoTime() - start);
+    }
+
+    @Override
+    public void setDevice(AudioDeviceInfo deviceInfo) {
+        final long start = System.nanoTime();
+        super.setDevice(deviceInfo);
+        mStats.record(CALL_SET_DEVICE, System.nanoTime() - start);
+    }
+
+    @Override
+    public void setGlobalEnabled(boolean globalEnabled) {
+        final long start = System.nanoTime();
+        super.setGlobalEnabled(globalEnabled);
+        enableEqualizer(globalEnabled);
+        mStats.record(CALL_SET_GLOBAL_ENABLED, System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean beginUpdate() {
+        final long start = System.nanoTime();
+        mStats.record(CALL_BEGIN_UPDATE, System.nanoTime() - start);
+        return true;
+    }
+
+    @Override
+    public boolean commitUpdate() {
+        final long start = System.nanoTime();
+        mStats.record(CALL_COMMIT_UPDATE, System.nanoTime() - start);
+        return true;
+    }
+
+    @Override
+    public int getBrand() {
+        return Constants.EFFECT_TYPE_ANDROID;
+    }
+
+    @Override
+    public boolean hasVirtualizer() {
+        return true;
+    }
+
+    @Override
+    public boolean hasBassBoost() {
+        return true;
+    }
+
+    @Override
+    public boolean hasReverb() {
+        return true;
+    }
+
+    @Override
+    public void enableEqualizer(boolean enable) {
+        final long start = System.nanoTime();
+        applyState(STATE_EQ_ENABLED, enable ? 1 : 0);
+        mStats.record(CALL_ENABLE_EQUALIZER, System.nanoTime() - start);
+    }
+
+    @Override
+    public void setEqualizerLevelsDecibels(float[] levels) {
+        final long start = System.nanoTime();
+        final short[] equalizerLevels = EqUtils.convertDecibelsToMillibelsInShorts(levels);
+        for (short i = 0; i < equalizerLevels.length && i < NUM_BANDS; i++) {
+            setBandLevel(i, equalizerLevels[i]);
+        }
+        mStats.record(CALL_SET_EQUALIZER_LEVELS, System.nanoTime() - start);
+    }
+
+    @Override
+    public short getNumEqualizerBands() {
+        return NUM_BANDS;
+    }
+
+    @Override
+    public void setEqualizerBandLevel(short band, float level) {
+        final long start = System.nanoTime();
+        setBandLevel(band, (short) level);
+        mStats.record(CALL_SET_EQUALIZER_BAND_LEVEL, System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized int getEqualizerBandLevel(short band) {
+        return mBandLevels[band];
+    }
+
+    @Override
+    public String getEqualizerPresetName(short preset) {
+        return PRESET_NAMES[preset];
+    }
+
+    @Override
+    public synchronized void useEqualizerPreset(short preset) {
+        for (int i = 0; i < NUM_BANDS; i++) {
+            invalidateState(STATE_EQ_BAND_LEVEL + i);
+            mBandLevels[i] = (short) (((preset + i) % 7 - 3) * 300);
+        }
+    }
+
+    @Override
+    public short getNumEqualizerPresets() {
+        return (short) PRESET_NAMES.length;
+    }
+
+    @Override
+    public short[] getEqualizerBandLevelRange() {
+        return BAND_LEVEL_RANGE.clone();
+    }
+
+    @Override
+    public int getCenterFrequency(short band) {
+        return CENTER_FREQS[band];
+    }
+
+    @Override
+    public void enableBassBoost(boolean enable) {
+        final long start = System.nanoTime();
+        applyState(STATE_BASS_BOOST_ENABLED, enable ? 1 : 0);
+        mStats.record(CALL_ENABLE_BASS_BOOST, System.nanoTime() - start);
+    }
+
+    @Override
+    public void setBassBoostStrength(short strength) {
+        final long start = System.nanoTime();
+        applyState(STATE_BASS_BOOST_STRENGTH, strength);
+        mStats.record(CALL_SET_BASS_BOOST_STRENGTH, System.nanoTime() - start);
+    }
+
+    @Override
+    public void enableVirtualizer(boolean enable) {
+        final long start = System.nanoTime();
+        applyState(STATE_VIRTUALIZER_ENABLED, enable ? 1 : 0);
+        mStats.record(CALL_ENABLE_VIRTUALIZER, System.nanoTime() - start);
+    }
+
+    @Override
+    public void setVirtualizerStrength(short strength) {
+        final long start = System.nanoTime();
+        applyState(STATE_VIRTUALIZER_STRENGTH, strength);
+        mStats.record(CALL_SET_VIRTUALIZER_STRENGTH, System.nanoTime() - start);
+    }
+
+    @Override
+    public void enableReverb(boolean enable) {
+        final long start = System.nanoTime();
+        applyState(STATE_REVERB_ENABLED, enable ? 1 : 0);
+        mStats.record(CALL_ENABLE_REVERB, System.nanoTime() - start);
+    }
+
+    @Override
+    public void setReverbPreset(short preset) {
+        final long start = System.nanoTime();
+        applyState(STATE_REVERB_PRESET, preset);
+        mStats.record(CALL_SET_REVERB_PRESET, System.nanoTime() - start);
+    }
+
+    private synchronized void setBandLevel(short band, short level) {
+        if (applyState(STATE_EQ_BAND_LEVEL + band, level)) {
+            mBandLevels[band] = level;
+        }
+    }
+
+    /**
+     * @return true if a simulated native call was made
+     */
+    private boolean applyState(int key, int value) {
+        if (isStateApplied(key, value)) {
+            return false;
+        }
+        countNativeCall(key);
+        nativeCall();
+        setStateApplied(key, value);
+        return true;
+    }
+
+    private void nativeCall() {
+        final long start = System.nanoTime();
+        if (mNativeCostNanos > 0) {
+            // spin rather than sleep, a binder call keeps the calling thread busy
+            while (System.nanoTime() - start < mNativeCostNanos) {
+                Thread.onSpinWait();
+            }
+        }
+        mStats.record(CALL_NATIVE, System.nanoTime() - start);
+    }
+}
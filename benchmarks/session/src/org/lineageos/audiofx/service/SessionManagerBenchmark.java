@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.lineageos.audiofx.service.AudioFxService.ALL_CHANGED;
+import static org.lineageos.audiofx.service.AudioFxService.BASS_BOOST_CHANGED;
+import static org.lineageos.audiofx.service.AudioFxService.EQ_CHANGED;
+import static org.lineageos.audiofx.service.AudioFxService.VIRTUALIZER_CHANGED;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.media.AudioDeviceInfo;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.lineageos.audiofx.Constants;
+import org.lineageos.audiofx.backends.EffectSet;
+import org.lineageos.audiofx.backends.FakeEffectSet;
+import org.lineageos.audiofx.eq.EqUtils;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the session pipeline with a random mix of session, update and device change events
+ * against {@link FakeEffectSet}, and reports throughput, update latency and call counts.
+ * <p>
+ * Sizes can be changed with -Daudiofx.bench.events, -Daudiofx.bench.sessions and
+ * -Daudiofx.bench.nativeCostUs.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionManagerBenchmark {
+
+    private static final int NUM_EVENTS = Integer.getInteger("audiofx.bench.events", 20000);
+    private static final int NUM_WARMUP_EVENTS = NUM_EVENTS / 4;
+    private static final int MAX_SESSIONS = Integer.getInteger("audiofx.bench.sessions", 16);
+
+    // roughly what a binder round trip into audioserver costs
+    private static final long NATIVE_COST_NANOS =
+            Integer.getInteger("audiofx.bench.nativeCostUs", 20) * 1000L;
+
+    private static final int NUM_BANDS = 5;
+    private static final int[] UPDATE_FLAGS = {
+            EQ_CHANGED, BASS_BOOST_CHANGED, VIRTUALIZER_CHANGED, ALL_CHANGED
+    };
+
+    private Context mContext;
+    private HandlerThread mHandlerThread;
+    private Handler mHandler;
+    private FakeEffectSet.Factory mFactory;
+    private DevicePreferenceManager mDevicePrefs;
+    private SessionManager mSessionManager;
+
+    private AudioDeviceInfo mSpeaker;
+    private AudioDeviceInfo mHeadset;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mHandlerThread = new HandlerThread("AudioFx-Backend");
+        mHandlerThread.start();
+        mHandler = new Handler(mHandlerThread.getLooper());
+        mFactory = new FakeEffectSet.Factory(NATIVE_COST_NANOS);
+
+        mSpeaker = mockDevice(1, AudioDeviceInfo.TYPE_BUILTIN_SPEAKER);
+        mHeadset = mockDevice(2, AudioDeviceInfo.TYPE_WIRED_HEADPHONES);
+
+        mDevicePrefs = new DevicePreferenceManager(mContext, mSpeaker, mFactory);
+        assertTrue(mDevicePrefs.initDefaults());
+        for (String device : new String[]{Constants.DEVICE_SPEAKER, Constants.DEVICE_HEADSET}) {
+            mDevicePrefs.prefsFor(device).edit()
+                    .putBoolean(Constants.DEVICE_AUDIOFX_GLOBAL_ENABLE, true)
+                    .commit();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (mSessionManager != null) {
+            // also quits the backend looper
+            mSessionManager.onDestroy();
+        } else {
+            mHandlerThread.quit();
+        }
+    }
+
+    private static AudioDeviceInfo mockDevice(int id, int type) {
+        final AudioDeviceInfo device = mock(AudioDeviceInfo.class);
+        when(device.getId()).thenReturn(id);
+        when(device.getType()).thenReturn(type);
+        return device;
+    }
+
+    private SessionManager newSessionManager() {
+        return new SessionManager(mContext, mHandler, mDevicePrefs, mSpeaker, mFactory) {
+            @Override
+            boolean isRecording() {
+                return false;
+            }
+        };
+    }
+
+    @Test
+    public void sessionPipeline() throws Exception {
+        // warm up on a throwaway manager, so its histograms don't end up in the report
+        final SessionManager warmup = newSessionManager();
+        runEvents(warmup, NUM_WARMUP_EVENTS, new Random(1));
+        drain(warmup);
+        removeAll(warmup);
+
+        mSessionManager = newSessionManager();
+        mFactory.getStats().reset();
+
+        final long start = System.nanoTime();
+        runEvents(mSessionManager, NUM_EVENTS, new Random(42));
+        drain(mSessionManager);
+        final long elapsed = System.nanoTime() - start;
+
+        final LatencyHistogram updateLatency = mSessionManager.getUpdateLatency();
+        final FakeEffectSet.Stats stats = mFactory.getStats();
+        report(elapsed, updateLatency, stats);
+
+        assertTrue(updateLatency.getCount() > 0);
+        assertTrue(stats.getCalls(FakeEffectSet.CALL_NATIVE) > 0);
+        // the band overrides made it through the ramp
+        assertTrue(stats.getCalls(FakeEffectSet.CALL_SET_EQUALIZER_BAND_LEVEL) > 0);
+        assertEquals(stats.getCalls(FakeEffectSet.CALL_BEGIN_UPDATE),
+                stats.getCalls(FakeEffectSet.CALL_COMMIT_UPDATE));
+
+        removeAll(mSessionManager);
+        assertFalse(mSessionManager.hasActiveSessions());
+    }
+
+    /**
+     * Issue events the way the service would see them: session opens and closes from the
+     * control receiver, updates from binder threads, device changes on the backend thread.
+     */
+    private void runEvents(final SessionManager sessionManager, int count, Random random) {
+        final float[] levels = new float[NUM_BANDS];
+        final StringBuilder levelsBuilder = new StringBuilder();
+        boolean headset = false;
+
+        for (int i = 0; i < count; i++) {
+            final int event = random.nextInt(100);
+            final int sessionId = 1 + random.nextInt(MAX_SESSIONS);
+            if (event < 10) {
+                sessionManager.addSession(sessionId);
+            } else if (event < 18) {
+                sessionManager.removeSession(sessionId);
+            } else if (event < 28) {
+                // the user picks another preset
+                for (int j = 0; j < NUM_BANDS; j++) {
+                    levels[j] = random.nextInt(31) - 15;
+                }
+                levelsBuilder.setLength(0);
+                mDevicePrefs.getCurrentDevicePrefs().edit()
+                        .putString(Constants.DEVICE_AUDIOFX_EQ_PRESET_LEVELS,
+                                EqUtils.appendLevels(levelsBuilder, levels).toString())
+                        .apply();
+                sessionManager.update(EQ_CHANGED);
+            } else if (event < 38) {
+                // a band is being dragged
+                sessionManager.setOverrideLevels((short) random.nextInt(NUM_BANDS),
+                        (random.nextInt(31) - 15) * 100);
+            } else if (event < 98) {
+                sessionManager.update(UPDATE_FLAGS[random.nextInt(UPDATE_FLAGS.length)]);
+            } else {
+                headset = !headset;
+                final AudioDeviceInfo device = headset ? mHeadset : mSpeaker;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mDevicePrefs.onAudioOutputChanged(false, device);
+                        sessionManager.onAudioOutputChanged(false, device);
+                    }
+                });
+            }
+        }
+    }
+
+    private void removeAll(SessionManager sessionManager) throws InterruptedException {
+        for (int sessionId = 1; sessionId <= MAX_SESSIONS; sessionId++) {
+            sessionManager.removeSession(sessionId);
+        }
+        drain(sessionManager);
+    }
+
+    /**
+     * Wait until the backend thread has handled everything queued so far, including the steps
+     * of the override ramp.
+     */
+    private void drain(SessionManager sessionManager) throws InterruptedException {
+        waitForBackend();
+        // the steps are delayed, and Robolectric's clock only moves when it is told to
+        final ShadowLooper looper = shadowOf(mHandlerThread.getLooper());
+        while (sessionManager.hasPendingOverrideStep()) {
+            looper.idleFor(Duration.ofMillis(EqRamp.STEP_INTERVAL_MS));
+        }
+        waitForBackend();
+    }
+
+    private void waitForBackend() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue("backend thread is stuck", done.await(60, TimeUnit.SECONDS));
+    }
+
+    private void report(long elapsedNanos, LatencyHistogram updateLatency,
+            FakeEffectSet.Stats stats) {
+        final PrintWriter pw = new PrintWriter(System.out, true);
+        pw.println("SessionManagerBenchmark: " + NUM_EVENTS + " events, up to " + MAX_SESSIONS
+                + " sessions, " + NATIVE_COST_NANOS / 1000 + "us per native call");
+        pw.println("  elapsed: " + elapsedNanos / 1000000 + "ms");
+        pw.println("  throughput: " + (NUM_EVENTS * 1000000000L / Math.max(1, elapsedNanos))
+                + " events/s");
+        pw.println("  updateBackend: count=" + updateLatency.getCount()
+                + " p50<=" + updateLatency.getPercentileMicros(0.5) + "us"
+                + " p99<=" + updateLatency.getPercentileMicros(0.99) + "us");
+        pw.println("  calls:");
+        stats.dump(pw, "    ");
+        pw.println("  native calls by effect (whole run):");
+        EffectSet.dumpStats(pw, "    ");
+        mSessionManager.dump(pw, "  ");
+    }
+}
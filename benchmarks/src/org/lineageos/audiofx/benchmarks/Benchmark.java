@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+/**
+ * A single benchmarked operation, measured in average time per operation.
+ * <p>
+ * Subclasses do their setup in {@link #setUp()}, outside of the measurement, and hand every
+ * result of {@link #run(Blackhole)} to the blackhole so the JIT can't drop the work.
+ */
+public abstract class Benchmark {
+
+    private final String mName;
+    private final int mOpsPerInvocation;
+
+    /**
+     * @param name fully qualified name, e.g. "Biquad.setHighShelf"
+     */
+    protected Benchmark(String name) {
+        this(name, 1);
+    }
+
+    /**
+     * @param opsPerInvocation how many operations one {@link #run(Blackhole)} performs, like
+     *                         JMH's OperationsPerInvocation, e.g. the samples of a block
+     */
+    protected Benchmark(String name, int opsPerInvocation) {
+        mName = name;
+        mOpsPerInvocation = opsPerInvocation;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getOpsPerInvocation() {
+        return mOpsPerInvocation;
+    }
+
+    /**
+     * Called once before warmup.
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Perform one operation.
+     */
+    public abstract void run(Blackhole bh) throws Exception;
+
+    /**
+     * Perform ops operations back to back. Benchmarks of very short operations can override this
+     * to keep the loop in their own class.
+     */
+    public void run(Blackhole bh, long ops) throws Exception {
+        for (long i = 0; i < ops; i++) {
+            run(bh);
+        }
+    }
+}
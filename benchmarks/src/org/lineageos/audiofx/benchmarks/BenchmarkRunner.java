@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Command line entry point of the host benchmarks.
+ * <p>
+ * Every benchmark is warmed up, then measured for a number of fixed-length iterations. The score
+ * is the mean time per operation over the iterations, reported with a 99.9% confidence interval,
+ * in the spirit of JMH's average time mode. With --json the results are also written in the
+ * layout of JMH's JSON output, so existing tooling can compare runs.
+ *
+ * <pre>
+ * usage: AudioFXBenchmarks [--list] [--filter REGEX] [--warmup N] [--iterations N]
+ *                          [--time MS] [--json FILE]
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    private static final int DEFAULT_ITERATIONS = 10;
+    private static final long DEFAULT_ITERATION_MS = 200;
+
+    // ops are run in chunks which take at least this long, to keep nanoTime() out of the score
+    private static final long MIN_CHUNK_NANOS = 100000;
+
+    // two sided 99.9% quantile of the normal distribution
+    private static final double Z_999 = 3.291;
+
+    private final int mWarmupIterations;
+    private final int mIterations;
+    private final long mIterationNanos;
+
+    public static class Result {
+        final String name;
+        final double[] nanosPerOp;
+        final double mean;
+        final double error;
+
+        Result(String name, double[] nanosPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+
+            double sum = 0;
+            for (double v : nanosPerOp) {
+                sum += v;
+            }
+            mean = sum / nanosPerOp.length;
+
+            double variance = 0;
+            for (double v : nanosPerOp) {
+                variance += (v - mean) * (v - mean);
+            }
+            variance /= Math.max(1, nanosPerOp.length - 1);
+            error = Z_999 * Math.sqrt(variance / nanosPerOp.length);
+        }
+    }
+
+    public BenchmarkRunner(int warmupIterations, int iterations, long iterationMs) {
+        mWarmupIterations = warmupIterations;
+        mIterations = iterations;
+        mIterationNanos = iterationMs * 1000000L;
+    }
+
+    /**
+     * Measure a single benchmark.
+     */
+    public Result measure(Benchmark benchmark) throws Exception {
+        final Blackhole bh = new Blackhole();
+        benchmark.setUp();
+
+        for (int i = 0; i < mWarmupIterations; i++) {
+            runIteration(benchmark, bh);
+        }
+        final double[] nanosPerOp = new double[mIterations];
+        for (int i = 0; i < mIterations; i++) {
+            nanosPerOp[i] = runIteration(benchmark, bh);
+        }
+
+        if (bh.getSink() == 42) {
+            // practically never true, but the JIT can't know that
+            System.err.println("");
+        }
+        return new Result(benchmark.getName(), nanosPerOp);
+    }
+
+    /**
+     * @return average nanoseconds per operation over one iteration
+     */
+    private double runIteration(Benchmark benchmark, Blackhole bh) throws Exception {
+        long chunk = 1;
+        long ops = 0;
+        final long start = System.nanoTime();
+        long now = start;
+        while (now - start < mIterationNanos) {
+            final long chunkStart = now;
+            benchmark.run(bh, chunk);
+            ops += chunk;
+            now = System.nanoTime();
+            if (now - chunkStart < MIN_CHUNK_NANOS && chunk < (1L << 40)) {
+                chunk *= 2;
+            }
+        }
+        return (now - start) / ((double) ops * benchmark.getOpsPerInvocation());
+    }
+
+    static void writeJson(PrintWriter pw, List<Result> results, int warmupIterations,
+            long iterationMs) {
+        pw.println("[");
+        for (int r = 0; r < results.size(); r++) {
+            final Result result = results.get(r);
+            pw.println("    {");
+            pw.println("        \"benchmark\" : \"" + escape(result.name) + "\",");
+            pw.println("        \"mode\" : \"avgt\",");
+            pw.println("        \"threads\" : 1,");
+            pw.println("        \"forks\" : 1,");
+            pw.println("        \"jvm\" : \"" + escape(System.getProperty("java.vm.name", ""))
+                    + "\",");
+            pw.println("        \"jdkVersion\" : \""
+                    + escape(System.getProperty("java.version", "")) + "\",");
+            pw.println("        \"warmupIterations\" : " + warmupIterations + ",");
+            pw.println("        \"warmupTime\" : \"" + iterationMs + " ms\",");
+            pw.println("        \"measurementIterations\" : " + result.nanosPerOp.length + ",");
+            pw.println("        \"measurementTime\" : \"" + iterationMs + " ms\",");
+            pw.println("        \"primaryMetric\" : {");
+            pw.println("            \"score\" : " + format(result.mean) + ",");
+            pw.println("            \"scoreError\" : " + format(result.error) + ",");
+            pw.println("            \"scoreConfidence\" : [ " + format(result.mean - result.error)
+                    + ", " + format(result.mean + result.error) + " ],");
+            pw.println("            \"scoreUnit\" : \"ns/op\",");
+            pw.print("            \"rawData\" : [ [ ");
+            for (int i = 0; i < result.nanosPerOp.length; i++) {
+                if (i > 0) {
+                    pw.print(", ");
+                }
+                pw.print(format(result.nanosPerOp[i]));
+            }
+            pw.println(" ] ]");
+            pw.println("        }");
+            pw.println(r < results.size() - 1 ? "    }," : "    }");
+        }
+        pw.println("]");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void usage() {
+        System.err.println("usage: AudioFXBenchmarks [--list] [--filter REGEX] [--warmup N]"
+                + " [--iterations N] [--time MS] [--json FILE]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean list = false;
+        Pattern filter = null;
+        int warmup = DEFAULT_WARMUP_ITERATIONS;
+        int iterations = DEFAULT_ITERATIONS;
+        long iterationMs = DEFAULT_ITERATION_MS;
+        String json = null;
+
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("--list")) {
+                list = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                usage();
+            }
+            switch (arg) {
+                case "--filter":
+                    filter = Pattern.compile(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--time":
+                    iterationMs = Long.parseLong(args[++i]);
+                    break;
+                case "--json":
+                    json = args[++i];
+                    break;
+                default:
+                    usage();
+            }
+        }
+        if (iterations < 1) {
+            usage();
+        }
+
+        final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (Benchmark benchmark : Benchmarks.all()) {
+            if (filter == null || filter.matcher(benchmark.getName()).find()) {
+                benchmarks.add(benchmark);
+            }
+        }
+
+        if (list) {
+            for (Benchmark benchmark : benchmarks) {
+                System.out.println(benchmark.getName());
+            }
+            return;
+        }
+
+        final BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, iterationMs);
+        final List<Result> results = new ArrayList<Result>();
+        System.out.println(String.format(Locale.US, "%-50s %14s %12s", "Benchmark", "ns/op",
+                "error"));
+        for (Benchmark benchmark : benchmarks) {
+            final Result result = runner.measure(benchmark);
+            results.add(result);
+            System.out.println(String.format(Locale.US, "%-50s %14.3f %12.3f", result.name,
+                    result.mean, result.error));
+        }
+
+        if (json != null) {
+            try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(json), StandardCharsets.UTF_8))) {
+                writeJson(pw, results, warmup, iterationMs);
+            } catch (IOException e) {
+                System.err.println("Unable to write " + json + ": " + e);
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of all benchmarks, in the order they run.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    static List<Benchmark> all() {
+        final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        EqMathBenchmarks.addTo(benchmarks);
+        ResponseBenchmarks.addTo(benchmarks);
+        CodecBenchmarks.addTo(benchmarks);
+        ParcelBenchmarks.addTo(benchmarks);
+        DspBenchmarks.addTo(benchmarks);
+        FitBenchmarks.addTo(benchmarks);
+        return benchmarks;
+    }
+}
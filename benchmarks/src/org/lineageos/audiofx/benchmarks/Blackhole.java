@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+/**
+ * Sink for benchmark results, so that the JIT can't prove them unused.
+ */
+public final class Blackhole {
+
+    private long mSink;
+    private Object mLast;
+
+    public void consume(long value) {
+        mSink += value;
+    }
+
+    public void consume(double value) {
+        mSink += Double.doubleToRawLongBits(value);
+    }
+
+    public void consume(float value) {
+        mSink += Float.floatToRawIntBits(value);
+    }
+
+    public void consume(boolean value) {
+        mSink += value ? 1 : 0;
+    }
+
+    public void consume(Object value) {
+        // stored to the heap, so the allocation has to happen
+        mLast = value;
+    }
+
+    /**
+     * @return something depending on everything consumed, printed once after a run
+     */
+    long getSink() {
+        return mSink + (mLast != null ? 1 : 0);
+    }
+}
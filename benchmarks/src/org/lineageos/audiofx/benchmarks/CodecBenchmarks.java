@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import org.lineageos.audiofx.Preset;
+import org.lineageos.audiofx.eq.EqUtils;
+
+import java.util.List;
+
+/**
+ * Band level strings as stored in the preferences, and the presets built from them.
+ */
+final class CodecBenchmarks {
+
+    // typical contents of audiofx.eq.preset.levels, and of the custom preset in millibels
+    private static final float[] LEVELS = {3.5f, -1.25f, 0, 2, -6.75f};
+    private static final String LEVELS_STRING = "3.5;-1.25;0.0;2.0;-6.75";
+    private static final String MILLIBELS_STRING = "350.0;-125.0;0.0;200.0;-675.0";
+    private static final String CUSTOM_PRESET_STRING = "Custom 2|" + LEVELS_STRING + "|false";
+
+    private CodecBenchmarks() {
+    }
+
+    static void addTo(List<Benchmark> benchmarks) {
+        benchmarks.add(new Benchmark("EqUtils.stringBandsToFloats") {
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(EqUtils.stringBandsToFloats(LEVELS_STRING));
+            }
+        });
+
+        benchmarks.add(new Benchmark("EqUtils.parseBands") {
+            private final float[] mLevels = new float[LEVELS.length];
+
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(EqUtils.parseBands(MILLIBELS_STRING, mLevels));
+                bh.consume(mLevels[4]);
+            }
+        });
+
+        benchmarks.add(new Benchmark("EqUtils.stringBandsToFloats.split") {
+            @Override
+            public void run(Blackhole bh) {
+                // the regex path, still used for other delimiters
+                bh.consume(EqUtils.stringBandsToFloats(LEVELS_STRING.replace(';', ','), ","));
+            }
+        });
+
+        benchmarks.add(new Benchmark("EqUtils.floatLevelsToString") {
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(EqUtils.floatLevelsToString(LEVELS));
+            }
+        });
+
+        benchmarks.add(new Benchmark("EqUtils.appendLevels") {
+            private final StringBuilder mBuilder = new StringBuilder();
+
+            @Override
+            public void run(Blackhole bh) {
+                mBuilder.setLength(0);
+                bh.consume(EqUtils.appendLevels(mBuilder, LEVELS).length());
+            }
+        });
+
+        benchmarks.add(new Benchmark("Preset.CustomPreset.fromString") {
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(Preset.CustomPreset.fromString(CUSTOM_PRESET_STRING));
+            }
+        });
+
+        benchmarks.add(new Benchmark("Preset.CustomPreset.toString") {
+            private final Preset.CustomPreset mPreset =
+                    new Preset.CustomPreset("Custom 2", LEVELS, false);
+
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(mPreset.toString());
+            }
+        });
+    }
+}
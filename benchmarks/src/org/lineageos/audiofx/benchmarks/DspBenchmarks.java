@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import org.lineageos.audiofx.dsp.ShelfCascade;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The shelf cascade on a block of 48 kHz stereo. Scores are per sample, so 1e9 / score is the
+ * number of samples per second one core can equalize; the perBand variant also divides by the
+ * number of active shelves.
+ */
+final class DspBenchmarks {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+    // every level differs from its neighbour, so no shelf is bypassed
+    private static final float[] LEVELS = {3.5f, -1.25f, 2, 4, -6.75f};
+    private static final float[] OTHER_LEVELS = {-2, 3, 0.5f, -4, 1};
+    private static final double SAMPLING_RATE = 48000;
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = 256;
+    private static final int SAMPLES = FRAMES * CHANNELS;
+    private static final int SHELVES = CENTER_FREQS.length - 1;
+
+    private DspBenchmarks() {
+    }
+
+    private static float[] noise() {
+        final Random random = new Random(1);
+        final float[] buffer = new float[SAMPLES];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = random.nextFloat() - 0.5f;
+        }
+        return buffer;
+    }
+
+    static void addTo(List<Benchmark> benchmarks) {
+        benchmarks.add(new Benchmark("ShelfCascade.process", SAMPLES) {
+            private final ShelfCascade mCascade =
+                    new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, CHANNELS);
+            private final float[] mIn = noise();
+            private final float[] mOut = new float[SAMPLES];
+
+            @Override
+            public void setUp() {
+                mCascade.setLevels(LEVELS);
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                mCascade.process(mIn, 0, mOut, 0, FRAMES);
+                bh.consume(mOut[SAMPLES - 1]);
+            }
+        });
+
+        benchmarks.add(new Benchmark("ShelfCascade.process.perBand", SAMPLES * SHELVES) {
+            private final ShelfCascade mCascade =
+                    new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, CHANNELS);
+            private final float[] mIn = noise();
+            private final float[] mOut = new float[SAMPLES];
+
+            @Override
+            public void setUp() {
+                mCascade.setLevels(LEVELS);
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                mCascade.process(mIn, 0, mOut, 0, FRAMES);
+                bh.consume(mOut[SAMPLES - 1]);
+            }
+        });
+
+        // the user is dragging a band, every block has new coefficients
+        benchmarks.add(new Benchmark("ShelfCascade.process.newLevels", SAMPLES) {
+            private final ShelfCascade mCascade =
+                    new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, CHANNELS);
+            private final float[] mIn = noise();
+            private final float[] mOut = new float[SAMPLES];
+            private boolean mOther;
+
+            @Override
+            public void run(Blackhole bh) {
+                mOther = !mOther;
+                mCascade.setLevels(mOther ? OTHER_LEVELS : LEVELS);
+                mCascade.process(mIn, 0, mOut, 0, FRAMES);
+                bh.consume(mOut[SAMPLES - 1]);
+            }
+        });
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import org.lineageos.audiofx.widget.Biquad;
+import org.lineageos.audiofx.widget.Complex;
+
+import java.util.List;
+
+/**
+ * Biquad coefficient and transfer function math, and the Complex arithmetic behind it.
+ */
+final class EqMathBenchmarks {
+
+    private static final double SAMPLING_RATE = 44100;
+
+    // a spread of frequencies, cycled through so the JIT can't constant fold them
+    private static final int NUM_POINTS = 64;
+    private static final double[] FREQS = new double[NUM_POINTS];
+    private static final double[] COS = new double[NUM_POINTS];
+    private static final double[] SIN = new double[NUM_POINTS];
+    private static final Complex[] Z = new Complex[NUM_POINTS];
+
+    static {
+        for (int i = 0; i < NUM_POINTS; i++) {
+            FREQS[i] = 20 * Math.pow(1000, i / (double) (NUM_POINTS - 1));
+            final double omega = FREQS[i] / SAMPLING_RATE * Math.PI * 2;
+            COS[i] = Math.cos(omega);
+            SIN[i] = Math.sin(omega);
+            Z[i] = new Complex(COS[i], SIN[i]);
+        }
+    }
+
+    private EqMathBenchmarks() {
+    }
+
+    static void addTo(List<Benchmark> benchmarks) {
+        benchmarks.add(new Benchmark("Biquad.setHighShelf") {
+            private final Biquad mBiquad = new Biquad();
+            private int mIndex;
+
+            @Override
+            public void run(Blackhole bh) {
+                final int i = mIndex++ & (NUM_POINTS - 1);
+                mBiquad.setHighShelf(FREQS[i], SAMPLING_RATE, i - 32, 1);
+                bh.consume(mBiquad.evaluateMagnitudeSquared(1, 0));
+            }
+        });
+
+        benchmarks.add(new Benchmark("Biquad.evaluateTransfer") {
+            private final Biquad mBiquad = new Biquad();
+            private int mIndex;
+
+            @Override
+            public void setUp() {
+                mBiquad.setHighShelf(1000, SAMPLING_RATE, 6, 1);
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(mBiquad.evaluateTransfer(Z[mIndex++ & (NUM_POINTS - 1)]).rho());
+            }
+        });
+
+        benchmarks.add(new Benchmark("Biquad.evaluateMagnitudeSquared") {
+            private final Biquad mBiquad = new Biquad();
+            private int mIndex;
+
+            @Override
+            public void setUp() {
+                mBiquad.setHighShelf(1000, SAMPLING_RATE, 6, 1);
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                final int i = mIndex++ & (NUM_POINTS - 1);
+                bh.consume(mBiquad.evaluateMagnitudeSquared(COS[i], SIN[i]));
+            }
+        });
+
+        benchmarks.add(new Benchmark("Complex.mulAddDiv") {
+            private int mIndex;
+
+            @Override
+            public void run(Blackhole bh) {
+                final Complex a = Z[mIndex++ & (NUM_POINTS - 1)];
+                final Complex b = Z[mIndex & (NUM_POINTS - 1)];
+                bh.consume(a.mul(b).add(a).div(b).rho());
+            }
+        });
+
+        benchmarks.add(new Benchmark("Complex.rhoTheta") {
+            private int mIndex;
+
+            @Override
+            public void run(Blackhole bh) {
+                final Complex z = Z[mIndex++ & (NUM_POINTS - 1)];
+                bh.consume(z.rho() + z.theta());
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import org.lineageos.audiofx.eq.CurveFitter;
+
+import java.util.List;
+
+/**
+ * Fitting target curves of different resolutions onto the 5 stock bands. A frame at 60 Hz is
+ * 16.7ms, the uncached fits have to stay far below that.
+ */
+final class FitBenchmarks {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+    private static final double SAMPLING_RATE = 44100;
+
+    private FitBenchmarks() {
+    }
+
+    private static float[] logFreqs(int count) {
+        final float[] freqs = new float[count];
+        for (int i = 0; i < count; i++) {
+            freqs[i] = (float) (20 * Math.pow(1000, i / (double) (count - 1)));
+        }
+        return freqs;
+    }
+
+    // something like a headphone compensation curve: bass shelf, presence dip, treble peak
+    private static float[] targetFor(float[] freqs) {
+        final float[] target = new float[freqs.length];
+        for (int i = 0; i < freqs.length; i++) {
+            final double octave = Math.log(freqs[i] / 1000.0) / Math.log(2);
+            target[i] = (float) (4 / (1 + Math.exp(3 + 2 * octave))
+                    - 3 * Math.exp(-(octave - 1.5) * (octave - 1.5) * 2)
+                    + 5 * Math.exp(-(octave - 3.2) * (octave - 3.2) * 4));
+        }
+        return target;
+    }
+
+    static void addTo(List<Benchmark> benchmarks) {
+        for (final int points : new int[]{10, 31, 128}) {
+            benchmarks.add(new Benchmark("CurveFitter.solve." + points) {
+                private final CurveFitter mFitter =
+                        new CurveFitter(CENTER_FREQS, SAMPLING_RATE, -15, 15);
+                private final float[] mFreqs = logFreqs(points);
+                private final float[] mTarget = targetFor(mFreqs);
+
+                @Override
+                public void run(Blackhole bh) {
+                    bh.consume(mFitter.solve(mFreqs, mTarget)[2]);
+                }
+            });
+        }
+
+        benchmarks.add(new Benchmark("CurveFitter.fit.cached") {
+            private final CurveFitter mFitter =
+                    new CurveFitter(CENTER_FREQS, SAMPLING_RATE, -15, 15);
+            private final float[] mFreqs = logFreqs(31);
+            private final float[] mTarget = targetFor(mFreqs);
+
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(mFitter.fit(mFreqs, mTarget)[2]);
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import android.os.Parcel;
+
+import org.lineageos.audiofx.Preset;
+
+import java.util.List;
+
+/**
+ * Preset parcel round trips. On the host these run against the stand-in Parcel from
+ * benchmarks/stubs, so they measure the preset's own marshalling code only.
+ */
+final class ParcelBenchmarks {
+
+    private static final float[] LEVELS = {3.5f, -1.25f, 0, 2, -6.75f};
+
+    private ParcelBenchmarks() {
+    }
+
+    static void addTo(List<Benchmark> benchmarks) {
+        benchmarks.add(new Benchmark("Preset.CustomPreset.parcelRoundTrip") {
+            private final Preset.CustomPreset mPreset =
+                    new Preset.CustomPreset("Custom 2", LEVELS, true);
+            private final Parcel mParcel = Parcel.obtain();
+
+            @Override
+            public void run(Blackhole bh) {
+                mParcel.recycle();
+                mPreset.writeToParcel(mParcel, 0);
+                mParcel.setDataPosition(0);
+                bh.consume(Preset.CustomPreset.CREATOR.createFromParcel(mParcel));
+            }
+        });
+
+        benchmarks.add(new Benchmark("Preset.PermCustomPreset.parcelRoundTrip") {
+            private final Preset.PermCustomPreset mPreset =
+                    new Preset.PermCustomPreset("Custom", LEVELS);
+            private final Parcel mParcel = Parcel.obtain();
+
+            @Override
+            public void run(Blackhole bh) {
+                mParcel.recycle();
+                mPreset.writeToParcel(mParcel, 0);
+                mParcel.setDataPosition(0);
+                bh.consume(Preset.PermCustomPreset.CREATOR.createFromParcel(mParcel));
+            }
+        });
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.benchmarks;
+
+import org.lineageos.audiofx.eq.FrequencyAxis;
+import org.lineageos.audiofx.widget.Biquad;
+import org.lineageos.audiofx.widget.Complex;
+import org.lineageos.audiofx.widget.CurveSampler;
+import org.lineageos.audiofx.widget.FrequencyResponse;
+
+import java.util.List;
+
+/**
+ * The response curve work EqualizerSurface does per frame, without the drawing.
+ */
+final class ResponseBenchmarks {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+
+    // grid of a 1080 pixel wide surface
+    private static final int GRID_SIZE = CurveSampler.gridSizeForWidth(1080);
+
+    // the surface used to evaluate 141 points at rest and 36 while animating
+    private static final int OLD_GRID_SIZE = 141;
+    private static final int OLD_ANIMATED_GRID_SIZE = 36;
+
+    private ResponseBenchmarks() {
+    }
+
+    private static FrequencyAxis newAxis() {
+        return newAxis(GRID_SIZE);
+    }
+
+    private static FrequencyAxis newAxis(int gridSize) {
+        return new FrequencyAxis(CENTER_FREQS, FrequencyAxis.DEFAULT_SAMPLING_RATE, gridSize);
+    }
+
+    static void addTo(List<Benchmark> benchmarks) {
+        // the user drags a single band
+        benchmarks.add(new Benchmark("FrequencyResponse.updateOneBand") {
+            private final FrequencyResponse mResponse = new FrequencyResponse();
+            private int mStep;
+
+            @Override
+            public void setUp() {
+                mResponse.setAxis(newAxis());
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                mResponse.setLevel(2, (mStep++ & 31) - 15);
+                mResponse.update();
+                bh.consume(mResponse.getResponseDb(GRID_SIZE / 2));
+            }
+        });
+
+        // a preset animation moves every band
+        benchmarks.add(new Benchmark("FrequencyResponse.updateAllBands") {
+            private final FrequencyResponse mResponse = new FrequencyResponse();
+            private final float[] mLevels = new float[CENTER_FREQS.length];
+            private int mStep;
+
+            @Override
+            public void setUp() {
+                mResponse.setAxis(newAxis());
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                final int step = mStep++ & 31;
+                for (int i = 0; i < mLevels.length; i++) {
+                    mLevels[i] = ((step + i * 7) & 31) - 15;
+                }
+                mResponse.setLevels(mLevels);
+                mResponse.update();
+                bh.consume(mResponse.getResponseDb(GRID_SIZE / 2));
+            }
+        });
+
+        // everything but the canvas calls of an animated frame, at the starting budget
+        benchmarks.add(new Benchmark("EqualizerSurface.animatedFrame") {
+            private final FrequencyResponse mResponse = new FrequencyResponse();
+            private final CurveSampler mSampler = new CurveSampler();
+            private final float[] mLevels = new float[CENTER_FREQS.length];
+            private int mStep;
+
+            @Override
+            public void setUp() {
+                mSampler.setGridSize(GRID_SIZE);
+                mResponse.setAxis(newAxis().withGridSize(mSampler.getFrameGridSize(true)));
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                final int step = mStep++ & 31;
+                for (int i = 0; i < mLevels.length; i++) {
+                    mLevels[i] = ((step + i * 7) & 31) - 15;
+                }
+                mResponse.setLevels(mLevels);
+                mResponse.update();
+                final int count = mSampler.select(mResponse.getResponseDb(), true);
+                bh.consume(mSampler.getSelectedIndex(count - 1));
+            }
+        });
+
+        // how the surface used to evaluate the curve, for comparison
+        addComplexResponse(benchmarks, "EqualizerSurface.complexResponse", OLD_GRID_SIZE);
+        addComplexResponse(benchmarks, "EqualizerSurface.complexResponse.animated",
+                OLD_ANIMATED_GRID_SIZE);
+
+        benchmarks.add(new Benchmark("FrequencyAxis.new") {
+            @Override
+            public void run(Blackhole bh) {
+                bh.consume(newAxis());
+            }
+        });
+    }
+
+    private static void addComplexResponse(List<Benchmark> benchmarks, String name,
+            final int gridSize) {
+        benchmarks.add(new Benchmark(name) {
+            private final Biquad[] mBiquads = new Biquad[CENTER_FREQS.length - 1];
+            private final float[] mLevels = new float[CENTER_FREQS.length];
+            private FrequencyAxis mAxis;
+            private int mStep;
+
+            @Override
+            public void setUp() {
+                mAxis = newAxis(gridSize);
+                for (int i = 0; i < mBiquads.length; i++) {
+                    mBiquads[i] = new Biquad();
+                }
+            }
+
+            @Override
+            public void run(Blackhole bh) {
+                final int step = mStep++ & 31;
+                for (int i = 0; i < mLevels.length; i++) {
+                    mLevels[i] = ((step + i * 7) & 31) - 15;
+                }
+                for (int i = 0; i < mBiquads.length; i++) {
+                    mBiquads[i].setHighShelf(CENTER_FREQS[i], mAxis.getSamplingRate(),
+                            mLevels[i + 1] - mLevels[i], 1);
+                }
+                final double gain = Math.pow(10, mLevels[0] / 20);
+                double sum = 0;
+                for (int j = 0; j < gridSize; j++) {
+                    final Complex z = new Complex(mAxis.getGridCos()[j], mAxis.getGridSin()[j]);
+                    double rho = gain;
+                    for (Biquad biquad : mBiquads) {
+                        rho *= biquad.evaluateTransfer(z).rho();
+                    }
+                    sum += 20 * Math.log10(rho);
+                }
+                bh.consume(sum);
+            }
+        });
+    }
+}
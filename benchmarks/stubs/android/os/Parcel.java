@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/**
+ * Host stand-in for the framework Parcel, for the benchmarks only.
+ * <p>
+ * Implements the subset used by the presets on a growable byte array with 4 byte alignment like
+ * the native Parcel, so round trips exercise the same write and read calls. It doesn't measure
+ * the cost of the native implementation.
+ */
+public final class Parcel {
+
+    private byte[] mData = new byte[256];
+    private int mSize;
+    private int mPosition;
+
+    private Parcel() {
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        mSize = 0;
+        mPosition = 0;
+    }
+
+    public int dataSize() {
+        return mSize;
+    }
+
+    public void setDataPosition(int pos) {
+        mPosition = pos;
+    }
+
+    private void ensure(int bytes) {
+        if (mPosition + bytes > mData.length) {
+            final byte[] grown = new byte[Math.max(mData.length * 2, mPosition + bytes)];
+            System.arraycopy(mData, 0, grown, 0, mSize);
+            mData = grown;
+        }
+    }
+
+    public void writeInt(int value) {
+        ensure(4);
+        mData[mPosition++] = (byte) value;
+        mData[mPosition++] = (byte) (value >> 8);
+        mData[mPosition++] = (byte) (value >> 16);
+        mData[mPosition++] = (byte) (value >> 24);
+        mSize = Math.max(mSize, mPosition);
+    }
+
+    public int readInt() {
+        if (mPosition + 4 > mSize) {
+            return 0;
+        }
+        return (mData[mPosition++] & 0xff)
+                | (mData[mPosition++] & 0xff) << 8
+                | (mData[mPosition++] & 0xff) << 16
+                | (mData[mPosition++] & 0xff) << 24;
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        // UTF-16 like the native Parcel, padded to 4 bytes
+        final int length = value.length();
+        writeInt(length);
+        for (int i = 0; i < length; i += 2) {
+            final char hi = i + 1 < length ? value.charAt(i + 1) : 0;
+            writeInt(value.charAt(i) | hi << 16);
+        }
+    }
+
+    public String readString() {
+        final int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i += 2) {
+            final int pair = readInt();
+            chars[i] = (char) pair;
+            if (i + 1 < length) {
+                chars[i + 1] = (char) (pair >>> 16);
+            }
+        }
+        return new String(chars);
+    }
+
+    public void writeFloatArray(float[] values) {
+        if (values == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(values.length);
+        for (float value : values) {
+            writeFloat(value);
+        }
+    }
+
+    public void readFloatArray(float[] values) {
+        final int length = readInt();
+        if (length != values.length) {
+            throw new RuntimeException("bad array lengths");
+        }
+        for (int i = 0; i < length; i++) {
+            values[i] = readFloat();
+        }
+    }
+}
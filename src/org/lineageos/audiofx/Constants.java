@@ -17,14 +17,18 @@ package org.lineageos.audiofx;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import org.lineageos.audiofx.eq.EqUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 
 public class Constants {
 
+    private static final String TAG = "AudioFx-Constants";
+
     // effect type identifiers
     public static final int EFFECT_TYPE_ANDROID = 1;
     public static final int EFFECT_TYPE_MAXXAUDIO = 2;
@@ -78,6 +82,11 @@ public class Constants {
     public static final String EQUALIZER_PRESET = "equalizer.preset.";
     public static final String EQUALIZER_PRESET_NAMES = "equalizer.preset_names";
 
+    // user presets
+    public static final String CUSTOM_PRESETS_FILE = "custom_presets.bin";
+    public static final String PRESET_LIBRARY_FILE = "preset_library.bin";
+    private static final String LEGACY_CUSTOM_PRESETS_PREF = "custom_presets";
+
     // musicfx constants
     public static final String MUSICFX_PREF_NAME = "musicfx";
     public static final String MUSICFX_DEFAULT_PACKAGE_KEY = "defaultpanelpackage";
@@ -91,46 +100,103 @@ public class Constants {
         return context.getSharedPreferences(AUDIOFX_GLOBAL_FILE, 0);
     }
 
-    public static List<Preset> getCustomPresets(Context ctx, int bands) {
-        ArrayList<Preset> presets = new ArrayList<Preset>();
-        final SharedPreferences presetPrefs = ctx.getSharedPreferences("custom_presets", 0);
-        String[] presetNames = presetPrefs.getString("preset_names", "").split("\\|");
+    private static PresetStore sPresetStore;
 
-        for (int i = 0; i < presetNames.length; i++) {
-            String storedPresetString = presetPrefs.getString(presetNames[i], null);
-            if (storedPresetString == null) {
-                continue;
+    /**
+     * @return the store for user presets, migrated from the old preferences on first use
+     */
+    public static synchronized PresetStore getPresetStore(Context ctx) {
+        if (sPresetStore == null) {
+            final File file = new File(ctx.getFilesDir(), CUSTOM_PRESETS_FILE);
+            if (!file.exists()) {
+                migrateLegacyCustomPresets(ctx, file);
             }
-            Preset.CustomPreset p = Preset.CustomPreset.fromString(storedPresetString);
-            presets.add(p);
+            sPresetStore = new PresetStore(file);
         }
-
-        return presets;
+        return sPresetStore;
     }
 
-    public static void saveCustomPresets(Context ctx, List<Preset> presets) {
-        final SharedPreferences.Editor presetPrefs = ctx.getSharedPreferences("custom_presets",
-                0).edit();
-        presetPrefs.clear();
-
-        StringBuffer presetNames = new StringBuffer();
-        for (int i = 0; i < presets.size(); i++) {
-            final Preset preset = presets.get(i);
-            if (preset instanceof Preset.CustomPreset
-                    && !(preset instanceof Preset.PermCustomPreset)) {
-                Preset.CustomPreset p = (Preset.CustomPreset) preset;
-                presetNames.append(p.getName());
-                presetNames.append("|");
-
-                presetPrefs.putString(p.getName(), p.toString());
+    /**
+     * Move the presets from the old preferences into a new store file. The file only appears
+     * once everything is written, so a failed migration is retried on the next start.
+     */
+    private static void migrateLegacyCustomPresets(Context ctx, File file) {
+        final SharedPreferences presetPrefs = ctx.getSharedPreferences(
+                LEGACY_CUSTOM_PRESETS_PREF, 0);
+        final String names = presetPrefs.getString("preset_names", "");
+        final ArrayList<Preset> presets = new ArrayList<Preset>();
+        if (!names.isEmpty()) {
+            for (String name : names.split("\\|")) {
+                final String storedPresetString = presetPrefs.getString(name, null);
+                if (storedPresetString == null) {
+                    continue;
+                }
+                final Preset.CustomPreset p = Preset.CustomPreset.fromString(storedPresetString);
+                if (p != null) {
+                    presets.add(p);
+                }
             }
         }
-        if (presetNames.length() > 0) {
-            presetNames.deleteCharAt(presetNames.length() - 1);
+
+        // creates the file even if there's nothing to migrate
+        final File tmp = new File(file.getPath() + ".migrate");
+        tmp.delete();
+        final PresetStore store = new PresetStore(tmp);
+        try {
+            try {
+                store.save(presets);
+            } finally {
+                store.close();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Unable to migrate custom presets", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Unable to migrate custom presets to " + file);
+            tmp.delete();
+            return;
         }
+        presetPrefs.edit().clear().commit();
+    }
+
+    private static PresetLibrary sPresetLibrary;
 
-        presetPrefs.putString("preset_names", presetNames.toString());
-        presetPrefs.commit();
+    public static File getPresetLibraryFile(Context ctx) {
+        return new File(ctx.getFilesDir(), PRESET_LIBRARY_FILE);
+    }
+
+    /**
+     * @return the library of imported presets, or null if nothing was imported yet
+     */
+    public static synchronized PresetLibrary getPresetLibrary(Context ctx) {
+        if (sPresetLibrary == null) {
+            final File file = getPresetLibraryFile(ctx);
+            if (!file.exists()) {
+                return null;
+            }
+            try {
+                sPresetLibrary = PresetLibrary.open(file);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to open preset library", e);
+            }
+        }
+        return sPresetLibrary;
+    }
+
+    /**
+     * Drop the open library, so the next {@link #getPresetLibrary(Context)} picks up a new import.
+     */
+    public static synchronized void closePresetLibrary() {
+        if (sPresetLibrary != null) {
+            try {
+                sPresetLibrary.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to close preset library", e);
+            }
+            sPresetLibrary = null;
+        }
     }
 
     public static int[] getBandLevelRange(Context context) {
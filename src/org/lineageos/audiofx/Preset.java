@@ -124,11 +124,24 @@ public class Preset implements Parcelable {
 
         private boolean mLocked;
 
+        /**
+         * Id of the record in the {@link PresetStore}, or 0 if not stored yet. Not parceled.
+         */
+        private int mStoreId;
+
         public CustomPreset(String name, float[] levels, boolean locked) {
             super(name, levels);
             mLocked = locked;
         }
 
+        int getStoreId() {
+            return mStoreId;
+        }
+
+        void setStoreId(int id) {
+            mStoreId = id;
+        }
+
         public boolean isLocked() {
             return mLocked;
         }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx;
+
+import android.util.Log;
+
+import org.lineageos.audiofx.eq.CurveFitter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Imports presets from external EQ libraries into a {@link PresetLibrary}.
+ * <p>
+ * The input is text with one preset per line: the name, followed by pairs of frequency in Hz
+ * and gain in dB, all separated by commas. Names containing commas or quotes can be quoted CSV
+ * style, with quotes doubled inside. Blank lines and lines starting with # are skipped.
+ * <pre>
+ *   # name, freq, gain, freq, gain, ...
+ *   Bass Boost, 32, 6, 64, 5, 125, 3, 250, 0, 1000, 0, 16000, 0
+ *   "Headphones, closed", 20, 4.5, 100, 2, 3000, -3, 10000, 1.5
+ * </pre>
+ * Lines are streamed one at a time and every preset is fitted to the hardware bands with the
+ * {@link CurveFitter} as it is read, so the file is never held in memory. Lines that can't be
+ * parsed are counted and skipped.
+ */
+public class PresetImporter {
+
+    private static final String TAG = PresetImporter.class.getSimpleName();
+
+    // don't flood the log with a broken file
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    private final CurveFitter mFitter;
+
+    // reused between lines, grown as needed
+    private float[] mFreqs = new float[32];
+    private float[] mGains = new float[32];
+    private int mNumPoints;
+
+    private int mImported;
+    private int mSkipped;
+
+    /**
+     * @param fitter fitter for the hardware bands, used by the importing thread only
+     */
+    public PresetImporter(CurveFitter fitter) {
+        mFitter = fitter;
+    }
+
+    /**
+     * Read all presets from the input and add them to the library.
+     *
+     * @return number of presets added
+     */
+    public int importPresets(BufferedReader in, PresetLibrary.Writer out) throws IOException {
+        mImported = 0;
+        mSkipped = 0;
+
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                continue;
+            }
+
+            try {
+                final String name = parseLine(trimmed);
+                // the fits are one-off, don't churn the fitter's cache
+                final float[] levels = mFitter.solve(Arrays.copyOf(mFreqs, mNumPoints),
+                        Arrays.copyOf(mGains, mNumPoints));
+                out.add(name, levels);
+                mImported++;
+            } catch (IllegalArgumentException e) {
+                if (mSkipped++ < MAX_LOGGED_ERRORS) {
+                    Log.w(TAG, "skipping line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+
+        if (mSkipped > 0) {
+            Log.w(TAG, "skipped " + mSkipped + " malformed lines");
+        }
+        return mImported;
+    }
+
+    /**
+     * @return number of lines skipped by the last import
+     */
+    public int getSkipped() {
+        return mSkipped;
+    }
+
+    /**
+     * Parse the points of a line into mFreqs and mGains, sorted by frequency.
+     *
+     * @return the preset name
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    String parseLine(String line) {
+        int pos;
+        String name;
+        if (line.charAt(0) == '"') {
+            final StringBuilder sb = new StringBuilder();
+            pos = 1;
+            while (true) {
+                final int quote = line.indexOf('"', pos);
+                if (quote < 0) {
+                    throw new IllegalArgumentException("unterminated quote");
+                }
+                sb.append(line, pos, quote);
+                if (quote + 1 < line.length() && line.charAt(quote + 1) == '"') {
+                    sb.append('"');
+                    pos = quote + 2;
+                } else {
+                    pos = quote + 1;
+                    break;
+                }
+            }
+            name = sb.toString();
+            while (pos < line.length() && line.charAt(pos) == ' ') {
+                pos++;
+            }
+            if (pos < line.length() && line.charAt(pos) != ',') {
+                throw new IllegalArgumentException("text after quoted name");
+            }
+        } else {
+            pos = line.indexOf(',');
+            if (pos < 0) {
+                pos = line.length();
+            }
+            name = line.substring(0, pos);
+        }
+        name = name.trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("no name");
+        }
+
+        mNumPoints = 0;
+        boolean freq = true;
+        while (pos < line.length()) {
+            // pos is at a comma
+            int end = line.indexOf(',', pos + 1);
+            if (end < 0) {
+                end = line.length();
+            }
+            final float value;
+            try {
+                value = Float.parseFloat(line.substring(pos + 1, end).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a number: " + line.substring(pos + 1,
+                        end));
+            }
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                throw new IllegalArgumentException("not a finite number: " + value);
+            }
+            if (freq) {
+                if (value <= 0) {
+                    throw new IllegalArgumentException("invalid frequency " + value);
+                }
+                if (mNumPoints == mFreqs.length) {
+                    mFreqs = Arrays.copyOf(mFreqs, mNumPoints * 2);
+                    mGains = Arrays.copyOf(mGains, mNumPoints * 2);
+                }
+                mFreqs[mNumPoints] = value;
+            } else {
+                mGains[mNumPoints++] = value;
+            }
+            freq = !freq;
+            pos = end;
+        }
+        if (!freq) {
+            throw new IllegalArgumentException("frequency without gain");
+        }
+        if (mNumPoints == 0) {
+            throw new IllegalArgumentException("no points");
+        }
+
+        // files are mostly sorted already, so insertion sort
+        for (int i = 1; i < mNumPoints; i++) {
+            final float f = mFreqs[i];
+            final float g = mGains[i];
+            int j = i - 1;
+            while (j >= 0 && mFreqs[j] > f) {
+                mFreqs[j + 1] = mFreqs[j];
+                mGains[j + 1] = mGains[j];
+                j--;
+            }
+            mFreqs[j + 1] = f;
+            mGains[j + 1] = g;
+        }
+        for (int i = 1; i < mNumPoints; i++) {
+            if (mFreqs[i] == mFreqs[i - 1]) {
+                throw new IllegalArgumentException("duplicate frequency " + mFreqs[i]);
+            }
+        }
+        return name;
+    }
+
+    // for tests
+    float[] getParsedFreqs() {
+        return Arrays.copyOf(mFreqs, mNumPoints);
+    }
+
+    float[] getParsedGains() {
+        return Arrays.copyOf(mGains, mNumPoints);
+    }
+}
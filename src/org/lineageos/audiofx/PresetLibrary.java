@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Read-only, indexed store for large libraries of imported presets, see {@link PresetImporter}.
+ * <p>
+ * Unlike {@link PresetStore}, nothing is read up front: opening a library only reads the header,
+ * and presets are read one at a time by their position in name order. The file layout is:
+ * <pre>
+ *   int   magic
+ *   short version
+ *   short number of bands
+ *   int   number of presets
+ *   long  offset of the index
+ *   int   reserved
+ *
+ *   one record per preset:
+ *   short name length in bytes
+ *   float levels[number of bands]
+ *   byte  name[name length], UTF-8
+ *
+ *   index:
+ *   long  record offset[number of presets], sorted by name, ignoring case
+ * </pre>
+ * A library is written once by a {@link Writer}, and replaced as a whole by the next import.
+ */
+public class PresetLibrary implements Closeable {
+
+    static final int MAGIC = 0x4146584c; // AFXL
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_HEADER_SIZE = 2;
+
+    private static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+
+    private final File mFile;
+    private final RandomAccessFile mRaf;
+    private final int mNumBands;
+    private final int mSize;
+    private final long mIndexOffset;
+
+    private PresetLibrary(File file, RandomAccessFile raf, int numBands, int size,
+            long indexOffset) {
+        mFile = file;
+        mRaf = raf;
+        mNumBands = numBands;
+        mSize = size;
+        mIndexOffset = indexOffset;
+    }
+
+    /**
+     * Open a library written by a {@link Writer}. Only the header is read.
+     */
+    public static PresetLibrary open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                throw new IOException("Not a preset library: " + file);
+            }
+            final short version = raf.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported preset library version " + version);
+            }
+            final int numBands = raf.readShort();
+            final int size = raf.readInt();
+            final long indexOffset = raf.readLong();
+            if (numBands <= 0 || size < 0 || indexOffset < HEADER_SIZE
+                    || indexOffset + size * 8L != raf.length()) {
+                throw new IOException("Corrupt preset library: " + file);
+            }
+            return new PresetLibrary(file, raf, numBands, size, indexOffset);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of presets in the library
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return number of bands the presets were fitted to
+     */
+    public int getNumBands() {
+        return mNumBands;
+    }
+
+    private long recordOffset(int index) throws IOException {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+        mRaf.seek(mIndexOffset + index * 8L);
+        return mRaf.readLong();
+    }
+
+    private String readName(long offset) throws IOException {
+        mRaf.seek(offset);
+        final byte[] name = new byte[mRaf.readShort()];
+        mRaf.seek(offset + RECORD_HEADER_SIZE + mNumBands * 4L);
+        mRaf.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return name of the preset at the given position in name order
+     */
+    public synchronized String getName(int index) throws IOException {
+        return readName(recordOffset(index));
+    }
+
+    /**
+     * Read the preset at the given position in name order.
+     */
+    public synchronized Preset.StaticPreset get(int index) throws IOException {
+        final long offset = recordOffset(index);
+        mRaf.seek(offset);
+        final byte[] name = new byte[mRaf.readShort()];
+        final float[] levels = new float[mNumBands];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = mRaf.readFloat();
+        }
+        mRaf.readFully(name);
+        return new Preset.StaticPreset(new String(name, StandardCharsets.UTF_8), levels);
+    }
+
+    /**
+     * Look a preset up by name, ignoring case. Takes a binary search over the index, so about
+     * log2(size) record reads.
+     *
+     * @return position of the preset in name order, or -1 if there is none by that name
+     */
+    public synchronized int indexOf(String name) throws IOException {
+        int low = 0;
+        int high = mSize - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = String.CASE_INSENSITIVE_ORDER.compare(
+                    readName(recordOffset(mid)), name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mRaf.close();
+    }
+
+    @Override
+    public String toString() {
+        return mFile + " (" + mSize + " presets, " + mNumBands + " bands)";
+    }
+
+    /**
+     * Streams presets into a new library file. Records are written as they are added, only the
+     * names and record offsets are kept in memory to build the index. Presets are deduplicated by
+     * name ignoring case, the last one added wins.
+     * <p>
+     * Everything goes to a temporary file, which replaces the library on {@link #commit()}. A
+     * writer closed without committing leaves the existing library untouched.
+     */
+    public static class Writer implements Closeable {
+
+        private final File mFile;
+        private final File mTmp;
+        private final int mNumBands;
+        private final DataOutputStream mOut;
+        private final TreeMap<String, Long> mOffsets =
+                new TreeMap<String, Long>(String.CASE_INSENSITIVE_ORDER);
+        private long mOffset;
+        private boolean mDone;
+
+        public Writer(File file, int numBands) throws IOException {
+            if (numBands <= 0 || numBands > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("invalid number of bands " + numBands);
+            }
+            mFile = file;
+            mTmp = new File(file.getPath() + ".tmp");
+            mNumBands = numBands;
+            mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mTmp)));
+            // the header is filled in on commit
+            mOut.write(new byte[HEADER_SIZE]);
+            mOffset = HEADER_SIZE;
+        }
+
+        /**
+         * @return number of distinct presets added so far
+         */
+        public int size() {
+            return mOffsets.size();
+        }
+
+        /**
+         * Append a preset.
+         *
+         * @throws IllegalArgumentException if the name is empty or too long, or the number of
+         *                                  levels doesn't match
+         */
+        public void add(String name, float[] levels) throws IOException {
+            if (mDone) {
+                throw new IllegalStateException("writer is closed");
+            }
+            final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0 || bytes.length > MAX_NAME_BYTES) {
+                throw new IllegalArgumentException("invalid preset name length " + bytes.length);
+            }
+            if (levels.length != mNumBands) {
+                throw new IllegalArgumentException("got " + levels.length + " levels for "
+                        + mNumBands + " bands");
+            }
+
+            mOut.writeShort(bytes.length);
+            for (float level : levels) {
+                mOut.writeFloat(level);
+            }
+            mOut.write(bytes);
+
+            // a replaced record stays in the file, but isn't indexed
+            mOffsets.put(name, mOffset);
+            mOffset += RECORD_HEADER_SIZE + mNumBands * 4L + bytes.length;
+        }
+
+        /**
+         * Write the index and replace the library file with the new one.
+         */
+        public void commit() throws IOException {
+            if (mDone) {
+                throw new IllegalStateException("writer is closed");
+            }
+            mDone = true;
+            final long indexOffset = mOffset;
+            try {
+                try {
+                    for (Map.Entry<String, Long> entry : mOffsets.entrySet()) {
+                        mOut.writeLong(entry.getValue());
+                    }
+                } finally {
+                    mOut.close();
+                }
+
+                final RandomAccessFile raf = new RandomAccessFile(mTmp, "rw");
+                try {
+                    raf.writeInt(MAGIC);
+                    raf.writeShort(VERSION);
+                    raf.writeShort(mNumBands);
+                    raf.writeInt(mOffsets.size());
+                    raf.writeLong(indexOffset);
+                    raf.writeInt(0);
+                    raf.getFD().sync();
+                } finally {
+                    raf.close();
+                }
+
+                if (!mTmp.renameTo(mFile)) {
+                    throw new IOException("Unable to replace " + mFile);
+                }
+            } catch (IOException e) {
+                mTmp.delete();
+                throw e;
+            }
+        }
+
+        /**
+         * Discard everything written, unless committed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            try {
+                mOut.close();
+            } finally {
+                mTmp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of EQ presets shown in the preset pager, by position:
+ * <pre>
+ *   predefined presets and the custom preset, always in memory
+ *   user presets from the {@link PresetStore}, in the order they were added
+ *   imported presets from the {@link PresetLibrary}, by name
+ * </pre>
+ * Only the first section is held in memory. User and imported presets are read when they are
+ * requested, and the last {@link #CACHE_SIZE} of them are kept around, which covers the pages
+ * the pager has instantiated and the ones it animates between. Names can be looked up without
+ * reading levels.
+ * <p>
+ * Changed user presets must be passed to {@link #setChanged(Preset)}. They are kept until the
+ * next {@link #save()}, even when they drop out of the cache. Adding and removing presets
+ * writes through to the store right away.
+ * <p>
+ * Not thread safe, only used on the main thread.
+ */
+public class PresetRepository {
+
+    private static final String TAG = PresetRepository.class.getSimpleName();
+
+    static final int CACHE_SIZE = 8;
+
+    private final List<Preset> mFixed;
+    private final PresetStore mStore;
+    private final int mNumBands;
+    private PresetLibrary mLibrary;
+
+    /**
+     * Store ids of the user presets, by position within their section
+     */
+    private int[] mUserIds;
+
+    /**
+     * Recently requested user and imported presets, by position
+     */
+    private final Map<Integer, Preset> mCache =
+            new LinkedHashMap<Integer, Preset>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Preset> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * User presets with unsaved changes, by store id
+     */
+    private final HashMap<Integer, Preset.CustomPreset> mChanged =
+            new HashMap<Integer, Preset.CustomPreset>();
+
+    /**
+     * @param fixed    predefined presets and the custom preset
+     * @param store    store of the user presets
+     * @param library  imported presets, or null
+     * @param numBands number of bands of the current configuration
+     */
+    public PresetRepository(List<Preset> fixed, PresetStore store, PresetLibrary library,
+            int numBands) {
+        mFixed = new ArrayList<Preset>(fixed);
+        mStore = store;
+        mNumBands = numBands;
+        try {
+            mUserIds = store.getIds();
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to load custom presets", e);
+            mUserIds = new int[0];
+        }
+        setLibrary(library);
+    }
+
+    /**
+     * Replace the imported presets, e.g. after a new import. Libraries fitted to a different
+     * number of bands are ignored.
+     */
+    public void setLibrary(PresetLibrary library) {
+        if (library != null && library.getNumBands() != mNumBands) {
+            Log.w(TAG, "ignoring " + library + ", the equalizer has " + mNumBands + " bands");
+            library = null;
+        }
+        mLibrary = library;
+        mCache.clear();
+    }
+
+    /**
+     * @return total number of presets
+     */
+    public int size() {
+        return mFixed.size() + mUserIds.length + (mLibrary != null ? mLibrary.size() : 0);
+    }
+
+    /**
+     * @return number of user presets
+     */
+    public int getUserPresetCount() {
+        return mUserIds.length;
+    }
+
+    private int userStart() {
+        return mFixed.size();
+    }
+
+    private int libraryStart() {
+        return mFixed.size() + mUserIds.length;
+    }
+
+    /**
+     * @return whether the preset at this position is a user preset, which can be edited
+     */
+    public boolean isUserPreset(int index) {
+        return index >= userStart() && index < libraryStart();
+    }
+
+    /**
+     * @return whether the preset at this position was imported
+     */
+    public boolean isImportedPreset(int index) {
+        return index >= libraryStart() && index < size();
+    }
+
+    public Preset get(int index) {
+        if (index < userStart()) {
+            return mFixed.get(index);
+        }
+        if (index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        }
+
+        if (index < libraryStart()) {
+            final Preset changed = mChanged.get(mUserIds[index - userStart()]);
+            if (changed != null) {
+                return changed;
+            }
+        }
+        Preset preset = mCache.get(index);
+        if (preset != null) {
+            return preset;
+        }
+
+        try {
+            if (index < libraryStart()) {
+                preset = mStore.get(mUserIds[index - userStart()]);
+            } else {
+                preset = mLibrary.get(index - libraryStart());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read preset " + index, e);
+        }
+        if (preset == null) {
+            // keep the pager going, but don't remember it
+            return new Preset.StaticPreset("", new float[mNumBands]);
+        }
+        mCache.put(index, preset);
+        return preset;
+    }
+
+    /**
+     * @return name of the preset at this position, read without its levels if possible
+     */
+    public String getName(int index) {
+        if (index < userStart()) {
+            return mFixed.get(index).getName();
+        }
+        if (index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        }
+
+        final Preset cached = index < libraryStart()
+                ? mChanged.get(mUserIds[index - userStart()]) : null;
+        if (cached != null) {
+            return cached.getName();
+        }
+        if (mCache.containsKey(index)) {
+            return mCache.get(index).getName();
+        }
+
+        try {
+            final String name = index < libraryStart()
+                    ? mStore.getName(mUserIds[index - userStart()])
+                    : mLibrary.getName(index - libraryStart());
+            if (name != null) {
+                return name;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read preset " + index, e);
+        }
+        return "";
+    }
+
+    /**
+     * Find the current position of a preset returned by {@link #get(int)}, also after presets
+     * were added or removed and after it dropped out of the cache. User presets are found by
+     * their store id, imported presets by their name, which is unique within the library.
+     *
+     * @return the position, or -1 if the preset is gone
+     */
+    public int indexOf(Preset preset) {
+        for (int i = 0; i < mFixed.size(); i++) {
+            if (mFixed.get(i) == preset) {
+                return i;
+            }
+        }
+        if (preset instanceof Preset.CustomPreset
+                && !(preset instanceof Preset.PermCustomPreset)) {
+            final int position = userPosition(((Preset.CustomPreset) preset).getStoreId());
+            return position >= 0 ? userStart() + position : -1;
+        }
+        if (preset instanceof Preset.StaticPreset && mLibrary != null) {
+            // cached presets don't need a lookup in the file
+            for (Map.Entry<Integer, Preset> entry : mCache.entrySet()) {
+                if (entry.getValue() == preset) {
+                    return entry.getKey();
+                }
+            }
+            try {
+                final int index = mLibrary.indexOf(preset.getName());
+                if (index >= 0) {
+                    return libraryStart() + index;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to look up preset " + preset.getName(), e);
+            }
+        }
+        return -1;
+    }
+
+    private int userPosition(int id) {
+        // ids are handed out in increasing order
+        return Arrays.binarySearch(mUserIds, id);
+    }
+
+    /**
+     * Add a new user preset, and store it.
+     *
+     * @return its position, or -1 if it couldn't be stored
+     */
+    public int add(Preset.CustomPreset preset) {
+        try {
+            mStore.put(preset);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Unable to save custom preset", e);
+            return -1;
+        }
+        mUserIds = Arrays.copyOf(mUserIds, mUserIds.length + 1);
+        mUserIds[mUserIds.length - 1] = preset.getStoreId();
+        // imported presets moved up
+        mCache.clear();
+        mCache.put(libraryStart() - 1, preset);
+        return libraryStart() - 1;
+    }
+
+    /**
+     * Remove a user preset from the store.
+     *
+     * @return whether there was a user preset at this position
+     */
+    public boolean remove(int index) {
+        if (!isUserPreset(index)) {
+            return false;
+        }
+        final int position = index - userStart();
+        final int id = mUserIds[position];
+        try {
+            mStore.remove(id);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to remove custom preset", e);
+        }
+        final int[] ids = new int[mUserIds.length - 1];
+        System.arraycopy(mUserIds, 0, ids, 0, position);
+        System.arraycopy(mUserIds, position + 1, ids, position, ids.length - position);
+        mUserIds = ids;
+        mChanged.remove(id);
+        // everything after it moved down
+        mCache.clear();
+        return true;
+    }
+
+    /**
+     * Remember that a user preset was changed, so it's written on the next {@link #save()}.
+     * Other presets are ignored.
+     */
+    public void setChanged(Preset preset) {
+        if (preset instanceof Preset.CustomPreset) {
+            final int id = ((Preset.CustomPreset) preset).getStoreId();
+            if (userPosition(id) >= 0) {
+                mChanged.put(id, (Preset.CustomPreset) preset);
+            }
+        }
+    }
+
+    /**
+     * Write the changed user presets to the store. Presets which couldn't be written are kept
+     * for the next try, unless they can't be stored at all.
+     */
+    public void save() {
+        final Iterator<Preset.CustomPreset> it = mChanged.values().iterator();
+        try {
+            while (it.hasNext()) {
+                final Preset.CustomPreset preset = it.next();
+                try {
+                    mStore.put(preset);
+                } catch (IllegalArgumentException e) {
+                    Log.e(TAG, "Dropping changes to " + preset.getName(), e);
+                }
+                it.remove();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to save custom presets", e);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Binary, append-only store for user presets.
+ * <p>
+ * The file starts with a header (magic, version) followed by one record per preset write:
+ * <pre>
+ *   int   record length in bytes, including this field
+ *   int   preset id
+ *   byte  flags, see FLAG_*
+ *   byte  reserved
+ *   short number of levels
+ *   short name length in bytes
+ *   short reserved
+ *   float levels[number of levels]
+ *   byte  name[name length], UTF-8
+ * </pre>
+ * The store keeps an index of the live record of every preset in memory, so changed levels and
+ * the lock state are written in place, a rename or a new preset appends one record, and a
+ * removal only flags the old record as deleted. Nothing else in the file is touched. Once
+ * deleted records take up more space than live ones, the file is rewritten without them.
+ * <p>
+ * Only names are kept in the index, levels are read from the file when a preset is requested.
+ * Single presets can be read with {@link #get(int)} and written with {@link #put}, so users
+ * with hundreds of presets don't need all of them in memory.
+ * <p>
+ * Presets are returned in the order they were first added, which is the order of their ids.
+ * <p>
+ * A record cut short at the end of the file is a torn write and is dropped. A record which
+ * doesn't make sense anywhere else means the file is corrupt: it is copied aside, and the store
+ * goes on with the records before the bad one.
+ */
+public class PresetStore {
+
+    private static final String TAG = PresetStore.class.getSimpleName();
+
+    static final int MAGIC = 0x41465850; // AFXP
+    static final short VERSION = 1;
+
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 16;
+
+    // offsets within a record
+    private static final int FLAGS_OFFSET = 8;
+    private static final int LEVELS_OFFSET = RECORD_HEADER_SIZE;
+
+    static final int FLAG_DELETED = 0x1;
+    static final int FLAG_LOCKED = 0x2;
+
+    // lengths are stored as shorts
+    private static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+    private static final int MAX_LEVELS = Short.MAX_VALUE;
+
+    // don't bother compacting small files
+    private static final int COMPACT_MIN_BYTES = 4096;
+
+    private final File mFile;
+    private RandomAccessFile mRaf;
+
+    /**
+     * Live records by preset id
+     */
+    private final TreeMap<Integer, Record> mIndex = new TreeMap<Integer, Record>();
+    private int mNextId = 1;
+
+    private long mLiveBytes;
+    private long mDeadBytes;
+
+    private static final class Record {
+        long offset;
+        int length;
+        int flags;
+        int numLevels;
+        String name;
+    }
+
+    public PresetStore(File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return whether the backing file exists yet
+     */
+    public boolean exists() {
+        return mFile.exists();
+    }
+
+    private void open() throws IOException {
+        if (mRaf != null) {
+            return;
+        }
+        mRaf = new RandomAccessFile(mFile, "rw");
+        try {
+            if (mRaf.length() < HEADER_SIZE) {
+                writeHeader(mRaf);
+            } else {
+                readAll();
+            }
+        } catch (IOException e) {
+            mRaf.close();
+            mRaf = null;
+            throw e;
+        }
+    }
+
+    private static void writeHeader(RandomAccessFile raf) throws IOException {
+        raf.setLength(0);
+        raf.writeInt(MAGIC);
+        raf.writeShort(VERSION);
+        raf.writeShort(0);
+    }
+
+    private void readAll() throws IOException {
+        mRaf.seek(0);
+        if (mRaf.readInt() != MAGIC) {
+            throw new IOException("Not a preset store: " + mFile);
+        }
+        final short version = mRaf.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported preset store version " + version);
+        }
+
+        final long fileLength = mRaf.length();
+        long offset = HEADER_SIZE;
+        boolean corrupt = false;
+        while (offset + RECORD_HEADER_SIZE <= fileLength) {
+            mRaf.seek(offset);
+            final int length = mRaf.readInt();
+            final int id = mRaf.readInt();
+            final int flags = mRaf.readByte();
+            mRaf.readByte();
+            final int numLevels = mRaf.readShort();
+            final int nameLength = mRaf.readShort();
+            mRaf.readShort();
+
+            if (numLevels < 0 || nameLength < 0
+                    || length != recordLength(numLevels, nameLength)) {
+                corrupt = true;
+                break;
+            }
+            if (offset + length > fileLength) {
+                // torn write at the end of the file
+                break;
+            }
+
+            if ((flags & FLAG_DELETED) != 0) {
+                mDeadBytes += length;
+            } else {
+                final Record record = new Record();
+                record.offset = offset;
+                record.length = length;
+                record.flags = flags;
+                record.numLevels = numLevels;
+                mRaf.seek(offset + LEVELS_OFFSET + numLevels * 4L);
+                final byte[] name = new byte[nameLength];
+                mRaf.readFully(name);
+                record.name = new String(name, StandardCharsets.UTF_8);
+
+                // the later record of an id wins
+                final Record old = mIndex.put(id, record);
+                if (old != null) {
+                    // only possible if a crash hit between append and delete
+                    mLiveBytes -= old.length;
+                    mDeadBytes += old.length;
+                }
+                mLiveBytes += length;
+            }
+            mNextId = Math.max(mNextId, id + 1);
+            offset += length;
+        }
+        if (corrupt) {
+            // keep everything after the bad record, in case it can be recovered by hand
+            final File backup =
+                    new File(mFile.getPath() + ".corrupt-" + System.currentTimeMillis());
+            Files.copy(mFile.toPath(), backup.toPath());
+            Log.e(TAG, "Corrupt record at offset " + offset + " of " + mFile + ", dropped the "
+                    + (fileLength - offset) + " bytes after it, the whole file was copied to "
+                    + backup);
+        }
+        if (offset < fileLength) {
+            mRaf.setLength(offset);
+        }
+    }
+
+    private static int recordLength(int numLevels, int nameLength) {
+        return RECORD_HEADER_SIZE + numLevels * 4 + nameLength;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the preset doesn't fit in a record
+     */
+    private static void checkPreset(Preset.CustomPreset preset) {
+        final int nameLength = preset.getName().getBytes(StandardCharsets.UTF_8).length;
+        if (nameLength > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("preset name too long: " + nameLength + " bytes");
+        }
+        if (preset.getLevels().length > MAX_LEVELS) {
+            throw new IllegalArgumentException("too many levels: " + preset.getLevels().length);
+        }
+    }
+
+    private float[] readLevels(Record record) throws IOException {
+        final float[] levels = new float[record.numLevels];
+        mRaf.seek(record.offset + LEVELS_OFFSET);
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = mRaf.readFloat();
+        }
+        return levels;
+    }
+
+    private Preset.CustomPreset toPreset(int id, Record record) throws IOException {
+        final Preset.CustomPreset preset = new Preset.CustomPreset(record.name,
+                readLevels(record), (record.flags & FLAG_LOCKED) != 0);
+        preset.setStoreId(id);
+        return preset;
+    }
+
+    /**
+     * Read all stored presets. The returned presets are tied to their records, so passing them
+     * back to {@link #save(List)} only writes what changed.
+     */
+    public synchronized List<Preset.CustomPreset> load() throws IOException {
+        open();
+        final ArrayList<Preset.CustomPreset> presets =
+                new ArrayList<Preset.CustomPreset>(mIndex.size());
+        for (Integer id : mIndex.keySet()) {
+            presets.add(toPreset(id, mIndex.get(id)));
+        }
+        return presets;
+    }
+
+    /**
+     * @return ids of the stored presets, in the order they were added
+     */
+    public synchronized int[] getIds() throws IOException {
+        open();
+        final int[] ids = new int[mIndex.size()];
+        int i = 0;
+        for (Integer id : mIndex.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * @return name of the stored preset, without reading its levels
+     */
+    public synchronized String getName(int id) throws IOException {
+        open();
+        final Record record = mIndex.get(id);
+        return record != null ? record.name : null;
+    }
+
+    /**
+     * Read a single preset. Like the ones returned by {@link #load()}, it is tied to its record.
+     *
+     * @return the preset, or null if there is none with this id
+     */
+    public synchronized Preset.CustomPreset get(int id) throws IOException {
+        open();
+        final Record record = mIndex.get(id);
+        return record != null ? toPreset(id, record) : null;
+    }
+
+    /**
+     * Write a single preset, adding it if it isn't stored yet.
+     *
+     * @throws IllegalArgumentException if the name or the levels don't fit in a record
+     */
+    public synchronized void put(Preset.CustomPreset preset) throws IOException {
+        checkPreset(preset);
+        open();
+        final Record record = mIndex.get(preset.getStoreId());
+        if (record == null) {
+            preset.setStoreId(mNextId++);
+            append(preset.getStoreId(), preset);
+        } else {
+            update(preset.getStoreId(), record, preset);
+        }
+    }
+
+    /**
+     * Remove a single preset.
+     */
+    public synchronized void remove(int id) throws IOException {
+        open();
+        final Record record = mIndex.remove(id);
+        if (record != null) {
+            markDeleted(record);
+            maybeCompact();
+        }
+    }
+
+    /**
+     * @return number of stored presets
+     */
+    public synchronized int size() throws IOException {
+        open();
+        return mIndex.size();
+    }
+
+    /**
+     * Bring the store in line with the user presets in the list. Other presets are ignored.
+     * Presets which aren't stored yet are added, and stored presets missing from the list are
+     * removed.
+     *
+     * @throws IllegalArgumentException if a name or the levels don't fit in a record, before
+     *                                  anything is written
+     */
+    public synchronized void save(List<Preset> presets) throws IOException {
+        for (int i = 0; i < presets.size(); i++) {
+            if (presets.get(i) instanceof Preset.CustomPreset) {
+                checkPreset((Preset.CustomPreset) presets.get(i));
+            }
+        }
+        open();
+
+        final HashSet<Integer> removed = new HashSet<Integer>(mIndex.keySet());
+        for (int i = 0; i < presets.size(); i++) {
+            final Preset preset = presets.get(i);
+            if (!(preset instanceof Preset.CustomPreset)
+                    || preset instanceof Preset.PermCustomPreset) {
+                continue;
+            }
+            final Preset.CustomPreset custom = (Preset.CustomPreset) preset;
+            final Record record = mIndex.get(custom.getStoreId());
+            if (record == null) {
+                custom.setStoreId(mNextId++);
+                append(custom.getStoreId(), custom);
+            } else {
+                removed.remove(custom.getStoreId());
+                update(custom.getStoreId(), record, custom);
+            }
+        }
+
+        for (Integer id : removed) {
+            markDeleted(mIndex.remove(id));
+        }
+        maybeCompact();
+    }
+
+    private void maybeCompact() throws IOException {
+        if (mDeadBytes >= COMPACT_MIN_BYTES && mDeadBytes > mLiveBytes) {
+            compact();
+        }
+    }
+
+    private void update(int id, Record record, Preset.CustomPreset preset) throws IOException {
+        final float[] levels = preset.getLevels();
+        if (!record.name.equals(preset.getName()) || record.numLevels != levels.length) {
+            // doesn't fit in place, the old record stays live until the new one is written
+            append(id, preset);
+            markDeleted(record);
+            return;
+        }
+
+        if (!Arrays.equals(readLevels(record), levels)) {
+            mRaf.seek(record.offset + LEVELS_OFFSET);
+            mRaf.write(levelsToBytes(levels));
+        }
+
+        final int flags = preset.isLocked() ? FLAG_LOCKED : 0;
+        if (record.flags != flags) {
+            mRaf.seek(record.offset + FLAGS_OFFSET);
+            mRaf.writeByte(flags);
+            record.flags = flags;
+        }
+    }
+
+    private void append(int id, Preset.CustomPreset preset) throws IOException {
+        final Record record = new Record();
+        record.offset = mRaf.length();
+        record.flags = preset.isLocked() ? FLAG_LOCKED : 0;
+        record.name = preset.getName();
+        record.numLevels = preset.getLevels().length;
+
+        final byte[] bytes = recordToBytes(id, record, preset.getLevels());
+        record.length = bytes.length;
+        mRaf.seek(record.offset);
+        mRaf.write(bytes);
+
+        mIndex.put(id, record);
+        mLiveBytes += record.length;
+    }
+
+    private void markDeleted(Record record) throws IOException {
+        mRaf.seek(record.offset + FLAGS_OFFSET);
+        mRaf.writeByte(record.flags | FLAG_DELETED);
+        mLiveBytes -= record.length;
+        mDeadBytes += record.length;
+    }
+
+    private static byte[] recordToBytes(int id, Record record, float[] levels) {
+        final byte[] name = record.name.getBytes(StandardCharsets.UTF_8);
+        final int length = recordLength(levels.length, name.length);
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(length);
+        buf.putInt(id);
+        buf.put((byte) record.flags);
+        buf.put((byte) 0);
+        buf.putShort((short) levels.length);
+        buf.putShort((short) name.length);
+        buf.putShort((short) 0);
+        for (float level : levels) {
+            buf.putFloat(level);
+        }
+        buf.put(name);
+        return buf.array();
+    }
+
+    private static byte[] levelsToBytes(float[] levels) {
+        final ByteBuffer buf = ByteBuffer.allocate(levels.length * 4);
+        for (float level : levels) {
+            buf.putFloat(level);
+        }
+        return buf.array();
+    }
+
+    /**
+     * Rewrite the file with only the live records, copied as they are, and swap it in.
+     */
+    private void compact() throws IOException {
+        final File tmp = new File(mFile.getPath() + ".tmp");
+        final long[] offsets = new long[mIndex.size()];
+        final RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            writeHeader(out);
+            long offset = HEADER_SIZE;
+            int i = 0;
+            for (Record record : mIndex.values()) {
+                final byte[] bytes = new byte[record.length];
+                mRaf.seek(record.offset);
+                mRaf.readFully(bytes);
+                out.write(bytes);
+                offsets[i++] = offset;
+                offset += record.length;
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        mRaf.close();
+        mRaf = null;
+        if (!tmp.renameTo(mFile)) {
+            tmp.delete();
+            mRaf = new RandomAccessFile(mFile, "rw");
+            throw new IOException("Unable to replace " + mFile);
+        }
+        mRaf = new RandomAccessFile(mFile, "rw");
+
+        int i = 0;
+        for (Record record : mIndex.values()) {
+            record.offset = offsets[i++];
+        }
+        mDeadBytes = 0;
+    }
+
+    public synchronized void close() throws IOException {
+        if (mRaf != null) {
+            mRaf.close();
+            mRaf = null;
+        }
+    }
+
+    // for tests
+    long getFileLength() {
+        return mFile.length();
+    }
+}
@@ -19,15 +19,23 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.Trace;
 import android.util.Log;
 import android.widget.CompoundButton;
 
 import org.lineageos.audiofx.Constants;
 import org.lineageos.audiofx.Preset;
+import org.lineageos.audiofx.PresetImporter;
+import org.lineageos.audiofx.PresetLibrary;
+import org.lineageos.audiofx.PresetRepository;
 import org.lineageos.audiofx.R;
+import org.lineageos.audiofx.eq.CurveFitter;
 import org.lineageos.audiofx.eq.EqUtils;
+import org.lineageos.audiofx.eq.FrequencyAxis;
 import org.lineageos.audiofx.service.AudioFxService;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -40,19 +48,13 @@ public class EqualizerManager {
     private final MasterConfigControl mConfig;
     private final Context mContext;
 
-    private float mMinFreq;
-    private float mMaxFreq;
-
     private float mMinDB;
     private float mMaxDB;
     private int mNumBands;
     private CompoundButton.OnCheckedChangeListener mLockChangeListener;
 
-    /*
-     * presets from the library custom preset.
-     */
-    private int mPredefinedPresets;
-    private float[] mCenterFreqs;
+    private FrequencyAxis mFrequencyAxis;
+    private CurveFitter mCurveFitter;
     private float[] mGlobalLevels;
 
     private final AtomicBoolean mAnimatingToCustom = new AtomicBoolean(false);
@@ -62,24 +64,30 @@ public class EqualizerManager {
 
     private int mCurrentPreset;
 
-    private final ArrayList<Preset> mEqPresets = new ArrayList<Preset>();
+    private PresetRepository mPresets;
     private int mEQCustomPresetPosition;
 
     private String mZeroedBandString;
 
+    private final StringBuilder mLevelsBuilder = new StringBuilder();
+
     private static final int MSG_SAVE_PRESETS = 1;
     private static final int MSG_SEND_EQ_OVERRIDE = 2;
+    private static final int MSG_SEND_EQ_OVERRIDES = 3;
 
     private final Handler mHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
         @Override
         public boolean handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_SAVE_PRESETS:
-                    Constants.saveCustomPresets(mContext, mEqPresets);
+                    mPresets.save();
                     break;
                 case MSG_SEND_EQ_OVERRIDE:
                     mConfig.overrideEqLevels((short) msg.arg1, (short) msg.arg2);
                     break;
+                case MSG_SEND_EQ_OVERRIDES:
+                    mConfig.overrideEqLevels((float[]) msg.obj);
+                    break;
             }
             return true;
         }
@@ -93,7 +101,11 @@ public class EqualizerManager {
     }
 
     public void applyDefaults() {
-        mEqPresets.clear();
+        if (mPresets != null) {
+            mHandler.removeMessages(MSG_SAVE_PRESETS);
+            mPresets.save();
+            mPresets = null;
+        }
         // setup eq
         int bands = Integer.parseInt(getGlobalPref("equalizer.number_of_bands", "5"));
         final int[] centerFreqs = Constants.getCenterFreqs(mContext, bands);
@@ -115,48 +127,44 @@ public class EqualizerManager {
 
         mZeroedBandString = EqUtils.getZeroedBandsString(getNumBands());
 
-        mCenterFreqs = Arrays.copyOf(centerFreqsKHz, mNumBands);
-        System.arraycopy(centerFreqsKHz, 0, mCenterFreqs, 0, mNumBands);
-        mMinFreq = mCenterFreqs[0] / 2;
-        mMaxFreq = (float) Math.pow(mCenterFreqs[mNumBands - 1], 2) / mCenterFreqs[mNumBands - 2]
-                / 2;
+        // the views derive the grids they sample on from it
+        mFrequencyAxis = new FrequencyAxis(centerFreqsKHz, FrequencyAxis.DEFAULT_SAMPLING_RATE);
+        mCurveFitter = new CurveFitter(centerFreqsKHz, mFrequencyAxis.getSamplingRate(), mMinDB,
+                mMaxDB);
 
         // setup equalizer presets
         final int numPresets = Integer.parseInt(getGlobalPref("equalizer.number_of_presets", "0"));
+        final ArrayList<Preset> presets = new ArrayList<Preset>();
 
         if (numPresets > 0) {
             // add library-provided presets
             String[] presetNames = getGlobalPref("equalizer.preset_names", "").split("\\|");
-            mPredefinedPresets =
-                    presetNames.length + 1; // we consider first EQ to be part of predefined
             for (int i = 0; i < numPresets; i++) {
-                mEqPresets.add(
+                presets.add(
                         new Preset.StaticPreset(presetNames[i], getPersistedPresetLevels(i)));
             }
-        } else {
-            mPredefinedPresets = 1; // custom is predefined
         }
         // add custom preset
-        mEqPresets.add(new Preset.PermCustomPreset(mContext.getString(R.string.custom),
+        presets.add(new Preset.PermCustomPreset(mContext.getString(R.string.custom),
                 getPersistedCustomLevels()));
-        mEQCustomPresetPosition = mEqPresets.size() - 1;
+        mEQCustomPresetPosition = presets.size() - 1;
 
-        // restore custom prefs
-        mEqPresets.addAll(Constants.getCustomPresets(mContext, mNumBands));
+        // user presets and imported presets are read as they are shown
+        mPresets = new PresetRepository(presets, Constants.getPresetStore(mContext),
+                Constants.getPresetLibrary(mContext), mNumBands);
 
         // setup default preset for speaker
         mCurrentPreset = Integer.parseInt(getPref(Constants.DEVICE_AUDIOFX_EQ_PRESET, "0"));
-        if (mCurrentPreset > mEqPresets.size() - 1) {
+        if (mCurrentPreset > mPresets.size() - 1) {
             mCurrentPreset = 0;
         }
         setPreset(mCurrentPreset);
     }
 
     public boolean isUserPreset() {
-        boolean result = mCurrentPreset >= mPredefinedPresets;
+        boolean result = mPresets.isUserPreset(mCurrentPreset);
         /*if (DEBUG) {
             Log.i(TAG, "isUserPreset(), current preset: " + mCurrentPreset);
-            Log.i(TAG, "----> predefined presets: " + mPredefinedPresets);
             Log.d(TAG, "----> RESULT: " + result);
         }*/
         return result;
@@ -172,7 +180,8 @@ public class EqualizerManager {
                 @Override
                 public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
                     if (isUserPreset()) {
-                        ((Preset.CustomPreset) mEqPresets.get(mCurrentPreset)).setLocked(isChecked);
+                        ((Preset.CustomPreset) mPresets.get(mCurrentPreset)).setLocked(isChecked);
+                        savePresetsDelayed();
                     }
                 }
             };
@@ -207,18 +216,31 @@ public class EqualizerManager {
         }
     }
 
+    /**
+     * Format levels for the preferences, reusing one buffer since this runs for every band
+     * change while the user drags. Must only be called on the main thread.
+     */
+    private String levelsToString(float[] levels) {
+        mLevelsBuilder.setLength(0);
+        return EqUtils.appendLevels(mLevelsBuilder, levels).toString();
+    }
+
+    /**
+     * Persist the current preset, if it's a user preset, and any earlier changes.
+     */
     private void savePresetsDelayed() {
+        mPresets.setChanged(getCurrentPreset());
         mHandler.sendEmptyMessageDelayed(MSG_SAVE_PRESETS, 500);
     }
 
     public int indexOf(Preset p) {
-        return mEqPresets.indexOf(p);
+        return mPresets.indexOf(p);
     }
 
     void onPreDeviceChanged() {
         // need to update the current preset based on the device here.
         int newPreset = Integer.parseInt(getPref(Constants.DEVICE_AUDIOFX_EQ_PRESET, "0"));
-        if (newPreset > mEqPresets.size() - 1) {
+        if (newPreset > mPresets.size() - 1) {
             newPreset = 0;
         }
 
@@ -232,7 +254,7 @@ public class EqualizerManager {
     }
 
     public Preset getCurrentPreset() {
-        return mEqPresets.get(mCurrentPreset);
+        return mPresets.get(mCurrentPreset);
     }
 
     /**
@@ -248,10 +270,10 @@ public class EqualizerManager {
 
         String levels = EqUtils.floatLevelsToString(
                 EqUtils.convertDecibelsToMillibels(
-                        mEqPresets.get(mCurrentPreset).getLevels()));
+                        mPresets.get(mCurrentPreset).getLevels()));
         setGlobalPref("custom", levels);
 
-        ((Preset.PermCustomPreset) mEqPresets.get(mEQCustomPresetPosition)).setLevels(
+        ((Preset.PermCustomPreset) mPresets.get(mEQCustomPresetPosition)).setLevels(
                 mGlobalLevels);
         if (DEBUG) {
             Log.i(TAG, "copyToCustom() wrote current preset levels to index: "
@@ -283,19 +305,23 @@ public class EqualizerManager {
      * Loops through all presets. And finds the first preset that can be written to. If one is not
      * found, then one is inserted, and that new index is returned.
      *
-     * @return the index that the levels were copied to
+     * @return the index that the levels were copied to, or the current one if they couldn't be
+     * stored
      */
     private int addPreset(float[] levels) {
-        final int customPresets = Constants.getCustomPresets(mContext, mNumBands).size();
+        final int customPresets = mPresets.getUserPresetCount();
         // format the name so it's like "Custom <N>", start with "Custom 2"
         final String name = String.format(mContext.getString(R.string.custom_n), customPresets + 2);
 
         Preset.CustomPreset customPreset = new Preset.CustomPreset(name, levels, false);
-        mEqPresets.add(customPreset);
+        final int index = mPresets.add(customPreset);
+        if (index < 0) {
+            return mCurrentPreset;
+        }
 
         mConfig.getCallbacks().notifyPresetsChanged();
 
-        return mEqPresets.size() - 1;
+        return index;
     }
 
     /**
@@ -308,6 +334,15 @@ public class EqualizerManager {
      * @param systemChange is this change generated by the system?
      */
     public void setLevel(final int band, final float dB, final boolean fromSystem) {
+        Trace.beginSection("EqualizerManager.setLevel");
+        try {
+            setLevelInternal(band, dB, fromSystem);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void setLevelInternal(final int band, final float dB, final boolean fromSystem) {
         if (DEBUG) Log.i(TAG, "setLevel(" + band + ", " + dB + ", " + fromSystem + ")");
 
         mGlobalLevels[band] = dB;
@@ -322,7 +357,7 @@ public class EqualizerManager {
         if (!fromSystem) { // user is touching
             // persist
 
-            final Preset preset = mEqPresets.get(mCurrentPreset);
+            final Preset preset = mPresets.get(mCurrentPreset);
             if (preset instanceof Preset.CustomPreset) {
                 if (mAnimatingToCustom.get()) {
                     if (DEBUG) {
@@ -332,14 +367,14 @@ public class EqualizerManager {
                     ((Preset.CustomPreset) preset).setLevel(band, dB);
                     if (preset instanceof Preset.PermCustomPreset) {
                         // store these as millibels
-                        String levels = EqUtils.floatLevelsToString(
+                        String levels = levelsToString(
                                 EqUtils.convertDecibelsToMillibels(
                                         preset.getLevels()));
                         setGlobalPref("custom", levels);
                     }
                 }
                 // needs to be updated immediately here for the service.
-                final String levels = EqUtils.floatLevelsToString(preset.getLevels());
+                final String levels = levelsToString(preset.getLevels());
                 setPref(Constants.DEVICE_AUDIOFX_EQ_PRESET_LEVELS, levels);
 
                 mConfig.updateService(AudioFxService.EQ_CHANGED);
@@ -348,6 +383,40 @@ public class EqualizerManager {
         }
     }
 
+    /**
+     * Set all band levels at once, as the system.
+     * <p/>
+     * Listeners get a single onBandLevelsChange() and the service gets all levels in one
+     * override, instead of one of each per band.
+     *
+     * @param dB the new decibel values
+     */
+    public void setLevels(final float[] dB) {
+        setLevels(dB, true);
+    }
+
+    private void setLevels(final float[] dB, final boolean sendOverride) {
+        Trace.beginSection("EqualizerManager.setLevels");
+        try {
+            final int N = Math.min(dB.length, mGlobalLevels.length);
+            System.arraycopy(dB, 0, mGlobalLevels, 0, N);
+
+            if (sendOverride && !mConfig.isUserDeviceOverride()) {
+                // convert decibels to millibels, only the latest levels need to be sent
+                final float[] millibels = new float[N];
+                for (int i = 0; i < N; i++) {
+                    millibels[i] = (short) (dB[i] * 100);
+                }
+                mHandler.removeMessages(MSG_SEND_EQ_OVERRIDES);
+                mHandler.obtainMessage(MSG_SEND_EQ_OVERRIDES, millibels).sendToTarget();
+            }
+
+            mConfig.getCallbacks().notifyBandLevelsChanged(mGlobalLevels);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
     /**
      * Set a new preset index.
      * <p/>
@@ -364,11 +433,9 @@ public class EqualizerManager {
         // persist
         setPref(Constants.DEVICE_AUDIOFX_EQ_PRESET, String.valueOf(newPresetIndex));
 
-        // update mGlobalLevels
+        // update mGlobalLevels, the backend gets them with EQ_CHANGED if it's updated
         float[] newlevels = getPresetLevels(newPresetIndex);
-        for (int i = 0; i < newlevels.length; i++) {
-            setLevel(i, newlevels[i], true);
-        }
+        setLevels(newlevels, !updateBackend);
 
         setPref(Constants.DEVICE_AUDIOFX_EQ_PRESET_LEVELS, EqUtils.floatLevelsToString(newlevels));
 
@@ -399,17 +466,69 @@ public class EqualizerManager {
      * eq methods
      *===============*/
 
+    /**
+     * @return the frequency axis for the current band configuration, shared by the EQ views
+     */
+    public FrequencyAxis getFrequencyAxis() {
+        return mFrequencyAxis;
+    }
+
+    /**
+     * Find the band levels that come closest to an arbitrary target curve, such as a graphic EQ
+     * setting with more bands than the hardware has, or a headphone compensation curve. The
+     * result can be applied with {@link #setLevels(float[])}.
+     * <p/>
+     * This is cheap enough for the UI thread, and cached per target.
+     *
+     * @param freqs frequencies of the target points in Hz, ascending
+     * @param dB    level of the target at each point
+     * @return the level of each band in decibels
+     */
+    public float[] fitLevels(float[] freqs, float[] dB) {
+        return mCurveFitter.fit(freqs, dB);
+    }
+
+    /**
+     * Import an external preset library, replacing the previous one. Every preset is fitted to
+     * the current bands, see {@link PresetImporter} for the format. Reads the whole input, so
+     * call it off the UI thread.
+     *
+     * @return number of presets imported
+     */
+    public int importPresets(BufferedReader in) throws IOException {
+        // CurveFitter is single threaded, don't share the one fitLevels() uses
+        final PresetImporter importer = new PresetImporter(new CurveFitter(
+                mFrequencyAxis.getCenterFreqs(), mFrequencyAxis.getSamplingRate(), mMinDB,
+                mMaxDB));
+        final PresetLibrary.Writer writer = new PresetLibrary.Writer(
+                Constants.getPresetLibraryFile(mContext), mNumBands);
+        try {
+            final int imported = importer.importPresets(in, writer);
+            writer.commit();
+            // swap the library where it's read
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Constants.closePresetLibrary();
+                    mPresets.setLibrary(Constants.getPresetLibrary(mContext));
+                    if (mCurrentPreset > mPresets.size() - 1) {
+                        setPreset(0);
+                    }
+                    mConfig.getCallbacks().notifyPresetsChanged();
+                }
+            });
+            return imported;
+        } finally {
+            writer.close();
+        }
+    }
+
     public float projectX(double freq) {
-        double pos = Math.log(freq);
-        double minPos = Math.log(mMinFreq);
-        double maxPos = Math.log(mMaxFreq);
-        return (float) ((pos - minPos) / (maxPos - minPos));
+        return mFrequencyAxis.projectX(freq);
     }
 
     public double reverseProjectX(float pos) {
-        double minPos = Math.log(mMinFreq);
-        double maxPos = Math.log(mMaxFreq);
-        return Math.exp(pos * (maxPos - minPos) + minPos);
+        return mFrequencyAxis.reverseProjectX(pos);
     }
 
     public float projectY(double dB) {
@@ -422,11 +541,11 @@ public class EqualizerManager {
     }
 
     public float getMinFreq() {
-        return mMinFreq;
+        return mFrequencyAxis.getMinFreq();
     }
 
     public float getMaxFreq() {
-        return mMaxFreq;
+        return mFrequencyAxis.getMaxFreq();
     }
 
     public float getMinDB() {
@@ -442,11 +561,11 @@ public class EqualizerManager {
     }
 
     public float getCenterFreq(int band) {
-        return mCenterFreqs[band];
+        return mFrequencyAxis.getCenterFreq(band);
     }
 
     public float[] getCenterFreqs() {
-        return mCenterFreqs;
+        return mFrequencyAxis.getCenterFreqs();
     }
 
     public float[] getLevels() {
@@ -464,8 +583,7 @@ public class EqualizerManager {
     public float[] getPersistedPresetLevels(int presetIndex) {
         String newLevels = null;
 
-        if (mEqPresets.size() > presetIndex
-                && mEqPresets.get(presetIndex) instanceof Preset.PermCustomPreset) {
+        if (mPresets != null && presetIndex == mEQCustomPresetPosition) {
             return getPersistedCustomLevels();
         } else {
             newLevels = getGlobalPref("equalizer.preset." + presetIndex, mZeroedBandString);
@@ -490,7 +608,7 @@ public class EqualizerManager {
      * @return an array of floats[] with the given index's preset levels
      */
     public float[] getPresetLevels(int presetIndex) {
-        return mEqPresets.get(presetIndex).getLevels();
+        return mPresets.get(presetIndex).getLevels();
     }
 
     /**
@@ -501,8 +619,9 @@ public class EqualizerManager {
      */
     public int getAssociatedPresetColorHex(int index) {
         int r = -1;
-        index = index % mEqPresets.size();
-        if (mEqPresets.get(index) instanceof Preset.CustomPreset) {
+        index = index % mPresets.size();
+        // by position, so user and imported presets don't have to be read
+        if (index >= mEQCustomPresetPosition) {
             r = R.color.preset_custom;
         } else {
             switch (index) {
@@ -555,16 +674,16 @@ public class EqualizerManager {
      * @return int value with total number of presets
      */
     public int getPresetCount() {
-        return mEqPresets.size();
+        return mPresets.size();
     }
 
     public Preset getPreset(int index) {
-        return mEqPresets.get(index);
+        return mPresets.get(index);
     }
 
     public String getLocalizedPresetName(int index) {
         // already localized
-        return localizePresetName(mEqPresets.get(index).getName());
+        return localizePresetName(mPresets.getName(index));
     }
 
     private final String localizePresetName(final String name) {
@@ -607,8 +726,7 @@ public class EqualizerManager {
     }
 
     public boolean removePreset(int index) {
-        if (index > mEQCustomPresetPosition) {
-            mEqPresets.remove(index);
+        if (mPresets.remove(index)) {
             mConfig.getCallbacks().notifyPresetsChanged();
 
             if (mCurrentPreset == index) {
@@ -38,12 +38,14 @@ import android.content.SharedPreferences;
 import android.media.AudioDeviceInfo;
 import android.media.AudioManager;
 import android.os.IBinder;
+import android.os.Trace;
 import android.util.Log;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import org.lineageos.audiofx.Constants;
 import org.lineageos.audiofx.service.AudioFxService;
+import org.lineageos.audiofx.service.UpdateTrace;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -175,7 +177,12 @@ public class MasterConfigControl {
 
     public void updateService(int flags) {
         if (checkService()) {
-            mService.update(flags);
+            Trace.beginSection("MasterConfigControl.updateService");
+            try {
+                mService.update(flags, UpdateTrace.begin(UpdateTrace.UPDATE));
+            } finally {
+                Trace.endSection();
+            }
         }
     }
 
@@ -330,7 +337,13 @@ public class MasterConfigControl {
 
     void overrideEqLevels(short band, short level) {
         if (checkService()) {
-            mService.setOverrideLevels(band, level);
+            mService.setOverrideLevels(band, level, UpdateTrace.begin(UpdateTrace.OVERRIDE));
+        }
+    }
+
+    void overrideEqLevels(float[] levels) {
+        if (checkService()) {
+            mService.setOverrideLevels(levels, UpdateTrace.begin(UpdateTrace.OVERRIDE));
         }
     }
 
@@ -51,6 +51,13 @@ public class StateCallbacks {
          */
         void onBandLevelChange(int band, float dB, boolean fromSystem);
 
+        /**
+         * All band levels have been changed at once by the system, e.g. when a preset is applied
+         *
+         * @param levels the new decibel values, must not be modified or kept
+         */
+        void onBandLevelsChange(float[] levels);
+
         /**
          * The preset has been set
          *
@@ -97,6 +104,14 @@ public class StateCallbacks {
         }
     }
 
+    void notifyBandLevelsChanged(final float[] levels) {
+        synchronized (mEqUpdateCallbacks) {
+            for (final EqUpdatedCallback callback : mEqUpdateCallbacks) {
+                callback.onBandLevelsChange(levels);
+            }
+        }
+    }
+
     /**
      * Callback for changes to visibility and state of the EQ
      */
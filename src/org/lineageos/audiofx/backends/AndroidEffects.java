@@ -55,6 +55,9 @@ class AndroidEffects extends EffectSetWithAndroidEq {
         mBassBoost = new BassBoost(100, mSessionId);
         mVirtualizer = new Virtualizer(100, mSessionId);
         mPresetReverb = new PresetReverb(100, mSessionId);
+        trackControl(mBassBoost);
+        trackControl(mVirtualizer);
+        trackControl(mPresetReverb);
     }
 
     @Override
@@ -99,27 +102,9 @@ class AndroidEffects extends EffectSetWithAndroidEq {
         if (!globalEnabled) {
             // disable everything. it will get explictly enabled
             // individually when necessary.
-            try {
-                if (mVirtualizer != null) {
-                    mVirtualizer.setEnabled(false);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Unable to disable virtualizer!", e);
-            }
-            try {
-                if (mBassBoost != null) {
-                    mBassBoost.setEnabled(false);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Unable to disable bass boost!", e);
-            }
-            try {
-                if (mPresetReverb != null) {
-                    mPresetReverb.setEnabled(false);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Unable to disable reverb!", e);
-            }
+            enableVirtualizer(false);
+            enableBassBoost(false);
+            enableReverb(false);
         }
     }
 
@@ -140,51 +125,34 @@ class AndroidEffects extends EffectSetWithAndroidEq {
 
     @Override
     public void enableBassBoost(boolean enable) {
-        try {
-            if (mBassBoost != null) {
-                mBassBoost.setEnabled(enable);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Unable to " + (enable ? "enable" : "disable") + " bass boost!", e);
-        }
+        setEnabledSafe(mBassBoost, STATE_BASS_BOOST_ENABLED, enable);
     }
 
     @Override
     public void setBassBoostStrength(short strength) {
-        setParameterSafe(mBassBoost, BassBoost.PARAM_STRENGTH, strength);
+        setParameterSafe(mBassBoost, STATE_BASS_BOOST_STRENGTH, BassBoost.PARAM_STRENGTH,
+                strength);
     }
 
     @Override
     public void enableVirtualizer(boolean enable) {
-        try {
-            if (mVirtualizer != null) {
-                mVirtualizer.setEnabled(enable);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Unable to " + (enable ? "enable" : "disable") + " virtualizer!", e);
-        }
+        setEnabledSafe(mVirtualizer, STATE_VIRTUALIZER_ENABLED, enable);
     }
 
     @Override
     public void setVirtualizerStrength(short strength) {
-        setParameterSafe(mVirtualizer, Virtualizer.PARAM_STRENGTH, strength);
+        setParameterSafe(mVirtualizer, STATE_VIRTUALIZER_STRENGTH, Virtualizer.PARAM_STRENGTH,
+                strength);
     }
 
     @Override
     public void enableReverb(boolean enable) {
-        try {
-            if (mPresetReverb != null) {
-                mPresetReverb.setEnabled(enable);
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Unable to " + (enable ? "enable" : "disable") + " preset reverb!", e);
-        }
-
+        setEnabledSafe(mPresetReverb, STATE_REVERB_ENABLED, enable);
     }
 
     @Override
     public void setReverbPreset(short preset) {
-        setParameterSafe(mPresetReverb, PresetReverb.PARAM_PRESET, preset);
+        setParameterSafe(mPresetReverb, STATE_REVERB_PRESET, PresetReverb.PARAM_PRESET, preset);
     }
 
     @Override
@@ -192,13 +160,38 @@ class AndroidEffects extends EffectSetWithAndroidEq {
         return Constants.EFFECT_TYPE_ANDROID;
     }
 
-    private void setParameterSafe(AudioEffect e, int p, short v) {
-        if (e == null) {
+    private void setEnabledSafe(AudioEffect e, int key, boolean enable) {
+        final int state = enable ? 1 : 0;
+        if (e == null || isStateApplied(key, state)) {
+            return;
+        }
+        countNativeCall(key);
+        try {
+            if (e.setEnabled(enable) == AudioEffect.SUCCESS) {
+                setStateApplied(key, state);
+            } else {
+                invalidateState(key);
+            }
+        } catch (Exception ex) {
+            invalidateState(key);
+            Log.e(TAG, "Unable to " + (enable ? "enable" : "disable") + " effect "
+                    + e.getDescriptor().name, ex);
+        }
+    }
+
+    private void setParameterSafe(AudioEffect e, int key, int p, short v) {
+        if (e == null || isStateApplied(key, v)) {
             return;
         }
+        countNativeCall(key);
         try {
-            e.setParameter(p, v);
+            if (e.setParameter(p, v) == AudioEffect.SUCCESS) {
+                setStateApplied(key, v);
+            } else {
+                invalidateState(key);
+            }
         } catch (Exception ex) {
+            invalidateState(key);
             Log.e(TAG, "Failed to set param " + p + " for effect " + e.getDescriptor().name, ex);
         }
     }
@@ -16,7 +16,12 @@
 package org.lineageos.audiofx.backends;
 
 import android.media.AudioDeviceInfo;
+import android.media.audiofx.AudioEffect;
 import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Helper class representing the full complement of effects attached to one audio session.
@@ -25,13 +30,66 @@ public abstract class EffectSet {
 
     protected static final String TAG = "AudioFx-EffectSet";
 
+    /**
+     * Keys into the applied state cache, see {@link #isStateApplied(int, int)}
+     */
+    protected static final int STATE_EQ_ENABLED = 0;
+    protected static final int STATE_BASS_BOOST_ENABLED = 1;
+    protected static final int STATE_BASS_BOOST_STRENGTH = 2;
+    protected static final int STATE_VIRTUALIZER_ENABLED = 3;
+    protected static final int STATE_VIRTUALIZER_STRENGTH = 4;
+    protected static final int STATE_REVERB_ENABLED = 5;
+    protected static final int STATE_REVERB_PRESET = 6;
+    protected static final int STATE_TREBLE_BOOST_ENABLED = 7;
+    protected static final int STATE_TREBLE_BOOST_STRENGTH = 8;
+    protected static final int STATE_VOLUME_BOOST_ENABLED = 9;
+    /** Add the band index */
+    protected static final int STATE_EQ_BAND_LEVEL = 0x100;
+
+    /**
+     * Native call statistics across all sets, by effect
+     */
+    private static final String[] STATS_EFFECTS = {
+            "equalizer", "bass boost", "virtualizer", "reverb", "treble boost", "volume boost"
+    };
+    private static final AtomicLongArray sNativeCalls = new AtomicLongArray(STATS_EFFECTS.length);
+    private static final AtomicLongArray sSkippedCalls =
+            new AtomicLongArray(STATS_EFFECTS.length);
+
     protected final int mSessionId;
 
     protected boolean mGlobalEnabled;
 
     private AudioDeviceInfo mDeviceInfo;
 
-    private boolean mMarkedForDeath = false;
+    private volatile boolean mMarkedForDeath = false;
+
+    /**
+     * Shadow copy of the last values successfully applied to the backend. A key which is absent
+     * is unknown, and the next value for it must always be dispatched.
+     */
+    private final SparseIntArray mAppliedState = new SparseIntArray();
+
+    /**
+     * Another client with a higher priority can take control of an effect of our session and
+     * change it. Whatever we had applied is unknown once that happens, so the cache is dropped
+     * when control moves either way, and when someone else enables or disables the effect.
+     */
+    private final AudioEffect.OnControlStatusChangeListener mControlStatusListener =
+            new AudioEffect.OnControlStatusChangeListener() {
+                @Override
+                public void onControlStatusChange(AudioEffect effect, boolean controlGranted) {
+                    invalidateState();
+                }
+            };
+
+    private final AudioEffect.OnEnableStatusChangeListener mEnableStatusListener =
+            new AudioEffect.OnEnableStatusChangeListener() {
+                @Override
+                public void onEnableStatusChange(AudioEffect effect, boolean enabled) {
+                    invalidateState();
+                }
+            };
 
     public EffectSet(int sessionId, AudioDeviceInfo deviceInfo) {
         mSessionId = sessionId;
@@ -90,6 +148,10 @@ public abstract class EffectSet {
      * @param deviceInfo
      */
     public void setDevice(AudioDeviceInfo deviceInfo) {
+        if (mDeviceInfo == null || deviceInfo == null
+                || mDeviceInfo.getId() != deviceInfo.getId()) {
+            invalidateState();
+        }
         mDeviceInfo = deviceInfo;
     }
 
@@ -229,6 +291,95 @@ public abstract class EffectSet {
         return 0;
     }
 
+    /**
+     * Check the applied state cache before issuing a native call.
+     *
+     * @param key   one of the STATE_ keys
+     * @param value the value about to be applied, booleans as 0/1
+     * @return true if the backend is known to already hold this value
+     */
+    protected final synchronized boolean isStateApplied(int key, int value) {
+        final int index = mAppliedState.indexOfKey(key);
+        final boolean applied = index >= 0 && mAppliedState.valueAt(index) == value;
+        if (applied) {
+            sSkippedCalls.incrementAndGet(statsIndexFor(key));
+        }
+        return applied;
+    }
+
+    /**
+     * Count a native call about to be issued for a state key, for {@link #dumpStats}.
+     */
+    protected static void countNativeCall(int key) {
+        sNativeCalls.incrementAndGet(statsIndexFor(key));
+    }
+
+    private static int statsIndexFor(int key) {
+        switch (key) {
+            case STATE_BASS_BOOST_ENABLED:
+            case STATE_BASS_BOOST_STRENGTH:
+                return 1;
+            case STATE_VIRTUALIZER_ENABLED:
+            case STATE_VIRTUALIZER_STRENGTH:
+                return 2;
+            case STATE_REVERB_ENABLED:
+            case STATE_REVERB_PRESET:
+                return 3;
+            case STATE_TREBLE_BOOST_ENABLED:
+            case STATE_TREBLE_BOOST_STRENGTH:
+                return 4;
+            case STATE_VOLUME_BOOST_ENABLED:
+                return 5;
+            default:
+                // STATE_EQ_ENABLED and the band levels
+                return 0;
+        }
+    }
+
+    /**
+     * Print how many native calls were issued and skipped by the state cache, per effect.
+     */
+    public static void dumpStats(PrintWriter pw, String prefix) {
+        for (int i = 0; i < STATS_EFFECTS.length; i++) {
+            pw.print(prefix);
+            pw.print(STATS_EFFECTS[i]);
+            pw.print(": issued=");
+            pw.print(sNativeCalls.get(i));
+            pw.print(" skipped=");
+            pw.println(sSkippedCalls.get(i));
+        }
+    }
+
+    /**
+     * Record a value which has been successfully applied to the backend.
+     */
+    protected final synchronized void setStateApplied(int key, int value) {
+        mAppliedState.put(key, value);
+    }
+
+    /**
+     * Forget a cached value, e.g. after the native call failed and the backend state is unknown.
+     */
+    protected final synchronized void invalidateState(int key) {
+        mAppliedState.delete(key);
+    }
+
+    /**
+     * Drop the applied state cache whenever another client takes over the effect, see
+     * {@link #mControlStatusListener}. Call for every native effect the set creates.
+     */
+    protected final void trackControl(AudioEffect effect) {
+        effect.setControlStatusListener(mControlStatusListener);
+        effect.setEnableStatusListener(mEnableStatusListener);
+    }
+
+    /**
+     * Forget all cached values. The next update will dispatch everything.
+     */
+    protected final synchronized void invalidateState() {
+        mAppliedState.clear();
+    }
+
     public boolean isMarkedForDeath() {
         return mMarkedForDeath;
     }
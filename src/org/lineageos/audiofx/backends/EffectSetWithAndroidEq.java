@@ -16,7 +16,9 @@
 package org.lineageos.audiofx.backends;
 
 import android.media.AudioDeviceInfo;
+import android.media.audiofx.AudioEffect;
 import android.media.audiofx.Equalizer;
+import android.os.Trace;
 import android.util.Log;
 
 import org.lineageos.audiofx.eq.EqUtils;
@@ -37,6 +39,7 @@ public abstract class EffectSetWithAndroidEq extends EffectSet {
     @Override
     protected void onCreate() {
         mEqualizer = new Equalizer(100, mSessionId);
+        trackControl(mEqualizer);
         super.onCreate();
 
     }
@@ -59,9 +62,19 @@ public abstract class EffectSetWithAndroidEq extends EffectSet {
 
     @Override
     public void enableEqualizer(boolean enable) {
+        final int state = enable ? 1 : 0;
+        if (isStateApplied(STATE_EQ_ENABLED, state)) {
+            return;
+        }
+        countNativeCall(STATE_EQ_ENABLED);
         try {
-            mEqualizer.setEnabled(enable);
+            if (mEqualizer.setEnabled(enable) == AudioEffect.SUCCESS) {
+                setStateApplied(STATE_EQ_ENABLED, state);
+            } else {
+                invalidateState(STATE_EQ_ENABLED);
+            }
         } catch (Exception e) {
+            invalidateState(STATE_EQ_ENABLED);
             Log.e(TAG, "enableEqualizer failed! enable=" + enable + " sessionId=" + mSessionId, e);
         }
     }
@@ -99,6 +112,10 @@ public abstract class EffectSetWithAndroidEq extends EffectSet {
 
     @Override
     public void useEqualizerPreset(short preset) {
+        // the preset rewrites every band behind our back
+        for (int i = 0; i < getNumEqualizerBands(); i++) {
+            invalidateState(STATE_EQ_BAND_LEVEL + i);
+        }
         mEqualizer.usePreset(preset);
     }
 
@@ -126,10 +143,20 @@ public abstract class EffectSetWithAndroidEq extends EffectSet {
     }
 
     private synchronized void setBandLevelSafe(short band, short level) {
+        final int key = STATE_EQ_BAND_LEVEL + band;
+        if (isStateApplied(key, level)) {
+            return;
+        }
+        countNativeCall(key);
+        Trace.beginSection("Equalizer.setBandLevel");
         try {
             mEqualizer.setBandLevel(band, level);
+            setStateApplied(key, level);
         } catch (Exception e) {
+            invalidateState(key);
             Log.e(TAG, "Unable to set eq band=" + band + " level=" + level, e);
+        } finally {
+            Trace.endSection();
         }
     }
 }
@@ -18,7 +18,7 @@ package org.lineageos.audiofx.backends;
 import android.content.Context;
 import android.media.AudioDeviceInfo;
 
-interface IEffectFactory {
+public interface IEffectFactory {
 
     /**
      * Create a new EffectSet based on current stream parameters.
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.dsp;
+
+import org.lineageos.audiofx.widget.Biquad;
+
+/**
+ * A single biquad run on interleaved float PCM, in transposed direct form II like the stages of
+ * {@link ShelfCascade}. Not thread safe.
+ */
+public class BiquadFilter {
+
+    private final int mChannels;
+    private final double[] mCoeffs = new double[5];
+    // z1, z2 per channel
+    private final double[] mState;
+
+    public BiquadFilter(int channels) {
+        mChannels = channels;
+        mState = new double[channels * 2];
+        // pass through until configured
+        mCoeffs[0] = 1;
+    }
+
+    /**
+     * Take over the coefficients of a biquad. The filter history is kept.
+     */
+    public void setCoefficients(Biquad biquad) {
+        biquad.getNormalizedCoefficients(mCoeffs, 0);
+    }
+
+    public void reset() {
+        for (int i = 0; i < mState.length; i++) {
+            mState[i] = 0;
+        }
+    }
+
+    /**
+     * Process a block in place.
+     *
+     * @param buffer interleaved samples
+     * @param offset index of the first sample of the block
+     * @param frames number of frames, samples per channel, in the block
+     */
+    public void process(float[] buffer, int offset, int frames) {
+        final double b0 = mCoeffs[0];
+        final double b1 = mCoeffs[1];
+        final double b2 = mCoeffs[2];
+        final double a1 = mCoeffs[3];
+        final double a2 = mCoeffs[4];
+        final int end = offset + frames * mChannels;
+
+        for (int channel = 0; channel < mChannels; channel++) {
+            double z1 = mState[channel * 2];
+            double z2 = mState[channel * 2 + 1];
+            for (int i = offset + channel; i < end; i += mChannels) {
+                final double x = buffer[i];
+                final double y = b0 * x + z1;
+                z1 = b1 * x - a1 * y + z2;
+                z2 = b2 * x - a2 * y;
+                buffer[i] = (float) y;
+            }
+            mState[channel * 2] = z1;
+            mState[channel * 2 + 1] = z2;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.dsp;
+
+import org.lineageos.audiofx.widget.Biquad;
+
+import java.util.Arrays;
+
+/**
+ * Runs the equalizer on interleaved float PCM, exactly as {@link
+ * org.lineageos.audiofx.widget.FrequencyResponse} draws it: the first band is a fixed gain, and
+ * every band after it is a high shelf at the previous band's center frequency with the level
+ * difference as its gain.
+ * <p>
+ * The shelves are transposed direct form II biquads with double precision state. New levels can
+ * be set from any thread and are picked up at the start of the next block. Nothing is allocated
+ * after construction.
+ */
+public class ShelfCascade {
+
+    // b0, b1, b2, a1, a2 per shelf
+    private static final int NUM_COEFFS = 5;
+
+    // state below this is inaudible, a draining shelf can be bypassed from there on
+    private static final double DRAINED = 1e-9;
+
+    private final float[] mCenterFreqs;
+    private final double mSamplingRate;
+    private final int mChannels;
+    private final int mNumShelves;
+
+    private final Biquad mBiquad = new Biquad();
+    private final double[] mCoeffs;
+    // z1, z2 per shelf and channel
+    private final double[] mState;
+    private final boolean[] mBypass;
+    // shelves which turned flat, but still hold state from their previous gain
+    private final boolean[] mDraining;
+    private final float[] mLevels;
+    private double mGain = 1;
+
+    // written by setLevels(), copied into mLevels at the start of a block
+    private final float[] mPendingLevels;
+    private volatile boolean mLevelsChanged;
+
+    /**
+     * @param centerFreqs  center frequency of each band in Hz
+     * @param samplingRate sampling rate of the processed audio in Hz
+     * @param channels     number of interleaved channels
+     */
+    public ShelfCascade(float[] centerFreqs, double samplingRate, int channels) {
+        if (centerFreqs.length == 0 || channels <= 0) {
+            throw new IllegalArgumentException("need at least one band and one channel");
+        }
+        mCenterFreqs = centerFreqs.clone();
+        mSamplingRate = samplingRate;
+        mChannels = channels;
+        mNumShelves = centerFreqs.length - 1;
+
+        mCoeffs = new double[mNumShelves * NUM_COEFFS];
+        mState = new double[mNumShelves * channels * 2];
+        mBypass = new boolean[mNumShelves];
+        mDraining = new boolean[mNumShelves];
+        // all levels start at 0 dB, with no state
+        Arrays.fill(mBypass, true);
+        mLevels = new float[centerFreqs.length];
+        mPendingLevels = new float[centerFreqs.length];
+        updateCoefficients();
+    }
+
+    public int getNumBands() {
+        return mCenterFreqs.length;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    public double getSamplingRate() {
+        return mSamplingRate;
+    }
+
+    /**
+     * Set new band levels, applied from the next processed block on.
+     *
+     * @param levels level of each band in decibels
+     */
+    public void setLevels(float[] levels) {
+        synchronized (mPendingLevels) {
+            System.arraycopy(levels, 0, mPendingLevels, 0, mPendingLevels.length);
+            mLevelsChanged = true;
+        }
+    }
+
+    /**
+     * Forget the filter history, e.g. before processing an unrelated stream.
+     */
+    public void reset() {
+        for (int i = 0; i < mState.length; i++) {
+            mState[i] = 0;
+        }
+        for (int shelf = 0; shelf < mNumShelves; shelf++) {
+            if (mDraining[shelf]) {
+                mDraining[shelf] = false;
+                mBypass[shelf] = true;
+            }
+        }
+    }
+
+    /**
+     * Process a block in place.
+     *
+     * @param buffer interleaved samples
+     * @param offset index of the first sample of the block
+     * @param frames number of frames, samples per channel, in the block
+     */
+    public void process(float[] buffer, int offset, int frames) {
+        process(buffer, offset, buffer, offset, frames);
+    }
+
+    /**
+     * Process a block. The input and output may be the same array at the same offset.
+     *
+     * @param in        interleaved input samples
+     * @param inOffset  index of the first input sample
+     * @param out       receives the interleaved output samples
+     * @param outOffset index of the first output sample
+     * @param frames    number of frames, samples per channel, in the block
+     */
+    public void process(float[] in, int inOffset, float[] out, int outOffset, int frames) {
+        if (mLevelsChanged) {
+            synchronized (mPendingLevels) {
+                System.arraycopy(mPendingLevels, 0, mLevels, 0, mLevels.length);
+                mLevelsChanged = false;
+            }
+            updateCoefficients();
+        }
+
+        final int samples = frames * mChannels;
+        final double gain = mGain;
+        for (int i = 0; i < samples; i++) {
+            out[outOffset + i] = (float) (in[inOffset + i] * gain);
+        }
+
+        for (int shelf = 0; shelf < mNumShelves; shelf++) {
+            if (mBypass[shelf]) {
+                continue;
+            }
+            final int c = shelf * NUM_COEFFS;
+            final double b0 = mCoeffs[c];
+            final double b1 = mCoeffs[c + 1];
+            final double b2 = mCoeffs[c + 2];
+            final double a1 = mCoeffs[c + 3];
+            final double a2 = mCoeffs[c + 4];
+
+            for (int channel = 0; channel < mChannels; channel++) {
+                final int s = (shelf * mChannels + channel) * 2;
+                double z1 = mState[s];
+                double z2 = mState[s + 1];
+                final int end = outOffset + samples;
+                for (int i = outOffset + channel; i < end; i += mChannels) {
+                    final double x = out[i];
+                    final double y = b0 * x + z1;
+                    z1 = b1 * x - a1 * y + z2;
+                    z2 = b2 * x - a2 * y;
+                    out[i] = (float) y;
+                }
+                mState[s] = z1;
+                mState[s + 1] = z2;
+            }
+
+            if (mDraining[shelf] && isDrained(shelf)) {
+                mDraining[shelf] = false;
+                mBypass[shelf] = true;
+                clearState(shelf);
+            }
+        }
+    }
+
+    private boolean isDrained(int shelf) {
+        final int s = shelf * mChannels * 2;
+        for (int i = 0; i < mChannels * 2; i++) {
+            if (Math.abs(mState[s + i]) > DRAINED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clearState(int shelf) {
+        final int s = shelf * mChannels * 2;
+        for (int i = 0; i < mChannels * 2; i++) {
+            mState[s + i] = 0;
+        }
+    }
+
+    private void updateCoefficients() {
+        mGain = Math.pow(10, mLevels[0] / 20.0);
+        for (int shelf = 0; shelf < mNumShelves; shelf++) {
+            final float dbGain = mLevels[shelf + 1] - mLevels[shelf];
+            if (dbGain == 0) {
+                if (mBypass[shelf]) {
+                    // already flat with its state at zero, skipping it stays exact
+                    continue;
+                }
+                // Zeroing the state of a shelf that was just shaping the signal would click.
+                // Keep running it with flat coefficients until the old state has died out.
+                mDraining[shelf] = true;
+            } else {
+                mDraining[shelf] = false;
+                mBypass[shelf] = false;
+            }
+            mBiquad.setHighShelf(mCenterFreqs[shelf], mSamplingRate, dbGain, 1);
+            mBiquad.getNormalizedCoefficients(mCoeffs, shelf * NUM_COEFFS);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.eq;
+
+import org.lineageos.audiofx.widget.Biquad;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds the band levels whose response, as drawn by
+ * {@link org.lineageos.audiofx.widget.FrequencyResponse}, comes closest to an arbitrary target
+ * curve, e.g. a 31 band graphic EQ setting or a measured headphone compensation curve.
+ * <p>
+ * The fit minimizes the squared dB error over the target points with a few damped Gauss-Newton
+ * iterations, starting from the target interpolated at the band centers. The normal equations
+ * only have one row per band, and are solved with a Cholesky decomposition. A 128 point target
+ * takes well under a millisecond on 5 bands, and results are cached per target and band set.
+ * <p>
+ * An instance must only be used by one thread at a time, every thread fitting curves needs its
+ * own. Only the shared result cache is synchronized.
+ */
+public class CurveFitter {
+
+    private static final int MAX_ITERATIONS = 8;
+    // stop once no level moves more than this, in dB
+    private static final double CONVERGED_DB = 0.01;
+    // gain step of the numeric shelf derivative, in dB
+    private static final double DERIVATIVE_STEP_DB = 0.01;
+    // relative damping, keeps bands the target says nothing about where they are
+    private static final double DAMPING = 1e-3;
+
+    private static final int CACHE_SIZE = 16;
+    private static final Map<Key, float[]> sCache =
+            new LinkedHashMap<Key, float[]>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, float[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private final float[] mCenterFreqs;
+    private final double mSamplingRate;
+    private final float mMinDb;
+    private final float mMaxDb;
+    private final Biquad mBiquad = new Biquad();
+
+    /**
+     * @param centerFreqs  center frequency of each hardware band in Hz
+     * @param samplingRate sampling rate of the shelf model
+     * @param minDb        lowest level a band can be set to
+     * @param maxDb        highest level a band can be set to
+     */
+    public CurveFitter(float[] centerFreqs, double samplingRate, float minDb, float maxDb) {
+        if (centerFreqs.length == 0) {
+            throw new IllegalArgumentException("need at least one band");
+        }
+        mCenterFreqs = centerFreqs.clone();
+        mSamplingRate = samplingRate;
+        mMinDb = minDb;
+        mMaxDb = maxDb;
+    }
+
+    /**
+     * Fit the band levels to a target, or return the cached result of an earlier fit of the
+     * same target to the same bands.
+     *
+     * @param freqs    frequencies of the target points in Hz, ascending
+     * @param targetDb level of the target at each point in dB
+     * @return level of each band in dB
+     */
+    public float[] fit(float[] freqs, float[] targetDb) {
+        final Key key = new Key(freqs, targetDb, mCenterFreqs, mSamplingRate, mMinDb, mMaxDb);
+        synchronized (sCache) {
+            final float[] cached = sCache.get(key);
+            if (cached != null) {
+                return cached.clone();
+            }
+        }
+        final float[] levels = solve(freqs, targetDb);
+        synchronized (sCache) {
+            sCache.put(key, levels.clone());
+        }
+        return levels;
+    }
+
+    /**
+     * Same as {@link #fit}, without the cache.
+     */
+    public float[] solve(float[] freqs, float[] targetDb) {
+        if (freqs.length != targetDb.length) {
+            throw new IllegalArgumentException("got " + freqs.length + " frequencies and "
+                    + targetDb.length + " levels");
+        }
+        for (int i = 1; i < freqs.length; i++) {
+            if (freqs[i] <= freqs[i - 1]) {
+                throw new IllegalArgumentException("frequencies must be ascending");
+            }
+        }
+
+        final int numBands = mCenterFreqs.length;
+        final float[] levels = new float[numBands];
+        if (freqs.length == 0) {
+            return levels;
+        }
+
+        // only points the shelves can be evaluated at take part
+        int numPoints = 0;
+        final double[] cos = new double[freqs.length];
+        final double[] sin = new double[freqs.length];
+        final double[] target = new double[freqs.length];
+        for (int i = 0; i < freqs.length; i++) {
+            if (freqs[i] > 0 && freqs[i] < mSamplingRate / 2) {
+                final double omega = 2 * Math.PI * freqs[i] / mSamplingRate;
+                cos[numPoints] = Math.cos(omega);
+                sin[numPoints] = Math.sin(omega);
+                target[numPoints] = targetDb[i];
+                numPoints++;
+            }
+        }
+
+        for (int band = 0; band < numBands; band++) {
+            levels[band] = clamp(interpolate(freqs, targetDb, mCenterFreqs[band]));
+        }
+        if (numPoints == 0 || numBands == 1) {
+            return levels;
+        }
+
+        final int numShelves = numBands - 1;
+        final double[][] shelfDb = new double[numShelves][numPoints];
+        final double[][] slope = new double[numShelves][numPoints];
+        final double[] jacobianRow = new double[numBands];
+        final double[] normal = new double[numBands * numBands];
+        final double[] rhs = new double[numBands];
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            for (int shelf = 0; shelf < numShelves; shelf++) {
+                final double gain = levels[shelf + 1] - levels[shelf];
+                evaluateShelf(shelf, gain, cos, sin, numPoints, shelfDb[shelf]);
+                evaluateShelf(shelf, gain + DERIVATIVE_STEP_DB, cos, sin, numPoints,
+                        slope[shelf]);
+                for (int p = 0; p < numPoints; p++) {
+                    slope[shelf][p] = (slope[shelf][p] - shelfDb[shelf][p]) / DERIVATIVE_STEP_DB;
+                }
+            }
+
+            Arrays.fill(normal, 0);
+            Arrays.fill(rhs, 0);
+            for (int p = 0; p < numPoints; p++) {
+                double model = levels[0];
+                for (int shelf = 0; shelf < numShelves; shelf++) {
+                    model += shelfDb[shelf][p];
+                }
+                final double residual = target[p] - model;
+
+                // shelf k sits between bands k and k + 1 and moves with their difference
+                for (int band = 0; band < numBands; band++) {
+                    double d = band == 0 ? 1 : slope[band - 1][p];
+                    if (band < numShelves) {
+                        d -= slope[band][p];
+                    }
+                    jacobianRow[band] = d;
+                }
+                for (int i = 0; i < numBands; i++) {
+                    rhs[i] += jacobianRow[i] * residual;
+                    for (int j = 0; j <= i; j++) {
+                        normal[i * numBands + j] += jacobianRow[i] * jacobianRow[j];
+                    }
+                }
+            }
+
+            double trace = 0;
+            for (int i = 0; i < numBands; i++) {
+                trace += normal[i * numBands + i];
+            }
+            final double damping = DAMPING * trace / numBands + 1e-9;
+            for (int i = 0; i < numBands; i++) {
+                normal[i * numBands + i] += damping;
+            }
+            if (!cholesky(normal, numBands)) {
+                break;
+            }
+            choleskySolve(normal, numBands, rhs);
+
+            double maxStep = 0;
+            for (int band = 0; band < numBands; band++) {
+                final float level = clamp(levels[band] + rhs[band]);
+                maxStep = Math.max(maxStep, Math.abs(level - levels[band]));
+                levels[band] = level;
+            }
+            if (maxStep < CONVERGED_DB) {
+                break;
+            }
+        }
+        return levels;
+    }
+
+    private void evaluateShelf(int shelf, double gain, double[] cos, double[] sin, int count,
+            double[] outDb) {
+        mBiquad.setHighShelf(mCenterFreqs[shelf], mSamplingRate, gain, 1);
+        for (int p = 0; p < count; p++) {
+            outDb[p] = 10 * Math.log10(mBiquad.evaluateMagnitudeSquared(cos[p], sin[p]));
+        }
+    }
+
+    private float clamp(double dB) {
+        return (float) Math.max(mMinDb, Math.min(mMaxDb, dB));
+    }
+
+    /**
+     * Linear interpolation over log frequency, holding the first and last point.
+     */
+    static double interpolate(float[] freqs, float[] dB, double freq) {
+        if (freq <= freqs[0]) {
+            return dB[0];
+        }
+        final int last = freqs.length - 1;
+        if (freq >= freqs[last]) {
+            return dB[last];
+        }
+        int i = 1;
+        while (freqs[i] < freq) {
+            i++;
+        }
+        final double t = Math.log(freq / freqs[i - 1]) / Math.log(freqs[i] / freqs[i - 1]);
+        return dB[i - 1] + t * (dB[i] - dB[i - 1]);
+    }
+
+    /**
+     * Decompose the symmetric positive definite matrix, of which only the lower triangle is
+     * used, into L * L^T in place.
+     *
+     * @return false if the matrix isn't positive definite
+     */
+    static boolean cholesky(double[] a, int n) {
+        for (int j = 0; j < n; j++) {
+            double d = a[j * n + j];
+            for (int k = 0; k < j; k++) {
+                d -= a[j * n + k] * a[j * n + k];
+            }
+            if (d <= 0) {
+                return false;
+            }
+            d = Math.sqrt(d);
+            a[j * n + j] = d;
+            for (int i = j + 1; i < n; i++) {
+                double s = a[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    s -= a[i * n + k] * a[j * n + k];
+                }
+                a[i * n + j] = s / d;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solve L * L^T * x = b in place, with L from {@link #cholesky}.
+     */
+    static void choleskySolve(double[] l, int n, double[] b) {
+        for (int i = 0; i < n; i++) {
+            double s = b[i];
+            for (int k = 0; k < i; k++) {
+                s -= l[i * n + k] * b[k];
+            }
+            b[i] = s / l[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double s = b[i];
+            for (int k = i + 1; k < n; k++) {
+                s -= l[k * n + i] * b[k];
+            }
+            b[i] = s / l[i * n + i];
+        }
+    }
+
+    /**
+     * Clear the cached fits, e.g. once the band configuration is known to have changed.
+     */
+    public static void clearCache() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    private static final class Key {
+        private final float[] mFreqs;
+        private final float[] mTargetDb;
+        private final float[] mCenterFreqs;
+        private final double mSamplingRate;
+        private final float mMinDb;
+        private final float mMaxDb;
+        private final int mHash;
+
+        Key(float[] freqs, float[] targetDb, float[] centerFreqs, double samplingRate,
+                float minDb, float maxDb) {
+            mFreqs = freqs.clone();
+            mTargetDb = targetDb.clone();
+            mCenterFreqs = centerFreqs;
+            mSamplingRate = samplingRate;
+            mMinDb = minDb;
+            mMaxDb = maxDb;
+
+            int hash = Arrays.hashCode(mFreqs);
+            hash = 31 * hash + Arrays.hashCode(mTargetDb);
+            hash = 31 * hash + Arrays.hashCode(mCenterFreqs);
+            hash = 31 * hash + Double.hashCode(samplingRate);
+            hash = 31 * hash + Float.floatToIntBits(minDb);
+            hash = 31 * hash + Float.floatToIntBits(maxDb);
+            mHash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mHash == other.mHash
+                    && mSamplingRate == other.mSamplingRate
+                    && mMinDb == other.mMinDb
+                    && mMaxDb == other.mMaxDb
+                    && Arrays.equals(mFreqs, other.mFreqs)
+                    && Arrays.equals(mTargetDb, other.mTargetDb)
+                    && Arrays.equals(mCenterFreqs, other.mCenterFreqs);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+}
@@ -216,6 +216,11 @@ public class EqBarView extends FrameLayout implements StateCallbacks.EqUpdatedCa
         updateHeight();
     }
 
+    @Override
+    public void onBandLevelsChange(float[] levels) {
+        updateHeight();
+    }
+
     @Override
     public void onPresetChanged(int newPresetIndex) {
 
@@ -42,6 +42,7 @@ import org.lineageos.audiofx.R;
 import org.lineageos.audiofx.activity.EqualizerManager;
 import org.lineageos.audiofx.activity.MasterConfigControl;
 import org.lineageos.audiofx.activity.StateCallbacks;
+import org.lineageos.audiofx.widget.BandLabels;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -250,7 +251,8 @@ public class EqContainerView extends FrameLayout
             mFirstLayout = false;
             mBarViews.clear();
 
-            for (int i = 0; i < mEqManager.getNumBands(); i++) {
+            final FrequencyAxis axis = mEqManager.getFrequencyAxis();
+            for (int i = 0; i < axis.getNumBands(); i++) {
                 final EqBandInfo band = new EqBandInfo();
                 band.mIndex = i;
                 mBandInfo.add(band);
@@ -292,10 +294,8 @@ public class EqContainerView extends FrameLayout
                 addView(bar, getFrameParams(i));
                 bar.setParentHeight(mHeight, getTop());
 
-                final float freq = mEqManager.getCenterFreq(i);
-                String frequencyText = String.format(freq < 1000 ? "%.0f" : "%.0fk",
-                        freq < 1000 ? freq : freq / 1000);
-                band.mFreq = frequencyText;
+                final float freq = axis.getCenterFreq(i);
+                band.mFreq = BandLabels.formatFrequency(freq);
                 mBarViews.add(bar);
             }
             updateSelectedBands();
@@ -473,6 +473,16 @@ public class EqContainerView extends FrameLayout
         invalidate();
     }
 
+    @Override
+    public void onBandLevelsChange(float[] levels) {
+        if (mFirstLayout) return;
+        for (int i = 0; i < levels.length; i++) {
+            final float dB = levels[i];
+            mBandInfo.get(i).mDb = dB != 0 ? String.format("%+1.1f", dB) : "0.0";
+        }
+        invalidate();
+    }
+
     @Override
     public void onPresetChanged(int newPresetIndex) {
         updateEqState();
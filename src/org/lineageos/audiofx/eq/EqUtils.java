@@ -24,6 +24,14 @@ public class EqUtils {
     private static final String TAG = EqUtils.class.getSimpleName();
     private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
     private static final String DEFAULT_DELIMITER = ";";
+    private static final char DELIMITER = ';';
+
+    // largest mantissa which is exact in a float, and powers of ten which are exact as well
+    private static final int MAX_FAST_DIGITS = 8;
+    private static final long MAX_FAST_MANTISSA = 1 << 24;
+    private static final float[] POW10 = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
 
     public static String getZeroedBandsString(int length) {
         return getZeroedBandsString(length, DEFAULT_DELIMITER);
@@ -55,6 +63,9 @@ public class EqUtils {
     }
 
     public static String floatLevelsToString(float[] levels, final String delimiter) {
+        if (DEFAULT_DELIMITER.equals(delimiter)) {
+            return appendLevels(new StringBuilder(levels.length * 6), levels).toString();
+        }
         // save
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < levels.length; i++) {
@@ -67,6 +78,9 @@ public class EqUtils {
 
 
     public static String shortLevelsToString(short[] levels, final String delimiter) {
+        if (DEFAULT_DELIMITER.equals(delimiter)) {
+            return appendLevels(new StringBuilder(levels.length * 6), levels).toString();
+        }
         // save
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < levels.length; i++) {
@@ -100,6 +114,11 @@ public class EqUtils {
     }
 
     public static short[] stringBandsToShorts(String input, final String delimiter) {
+        if (DEFAULT_DELIMITER.equals(delimiter)) {
+            final short[] equalizerLevels = new short[countBands(input)];
+            parseBands(input, equalizerLevels);
+            return equalizerLevels;
+        }
         String[] levels = input.split(delimiter);
 
         short[] equalizerLevels = new short[levels.length];
@@ -111,6 +130,11 @@ public class EqUtils {
 
 
     public static float[] stringBandsToFloats(String input, final String delimiter) {
+        if (DEFAULT_DELIMITER.equals(delimiter)) {
+            final float[] equalizerLevels = new float[countBands(input)];
+            parseBands(input, equalizerLevels);
+            return equalizerLevels;
+        }
         String[] levels = input.split(delimiter);
 
         float[] equalizerLevels = new float[levels.length];
@@ -120,6 +144,216 @@ public class EqUtils {
         return equalizerLevels;
     }
 
+    /**
+     * Count the levels in a ';' delimited string, the same way {@link String#split(String)}
+     * would: trailing empty levels are not counted.
+     */
+    public static int countBands(CharSequence input) {
+        final int length = input.length();
+        if (length == 0) {
+            return 1;
+        }
+        int count = 1;
+        int lastNonEmpty = 0;
+        int tokenStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (input.charAt(i) == DELIMITER) {
+                if (i > tokenStart) {
+                    lastNonEmpty = count;
+                }
+                count++;
+                tokenStart = i + 1;
+            }
+        }
+        if (length > tokenStart) {
+            lastNonEmpty = count;
+        }
+        return lastNonEmpty;
+    }
+
+    /**
+     * Parse ';' delimited levels into out, without creating intermediate strings for the
+     * common formats.
+     *
+     * @return the number of levels parsed, see {@link #countBands(CharSequence)}
+     * @throws NumberFormatException    if a level is malformed
+     * @throws IllegalArgumentException if out is too small
+     */
+    public static int parseBands(CharSequence input, float[] out) {
+        final int count = countBands(input);
+        if (count > out.length) {
+            throw new IllegalArgumentException("Expected at most " + out.length
+                    + " levels, got " + count);
+        }
+        int tokenStart = 0;
+        for (int i = 0; i < count; i++) {
+            int tokenEnd = tokenStart;
+            while (tokenEnd < input.length() && input.charAt(tokenEnd) != DELIMITER) {
+                tokenEnd++;
+            }
+            out[i] = parseLevel(input, tokenStart, tokenEnd);
+            tokenStart = tokenEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Like {@link #parseBands(CharSequence, float[])}, truncating each level to a short.
+     */
+    public static int parseBands(CharSequence input, short[] out) {
+        final int count = countBands(input);
+        if (count > out.length) {
+            throw new IllegalArgumentException("Expected at most " + out.length
+                    + " levels, got " + count);
+        }
+        int tokenStart = 0;
+        for (int i = 0; i < count; i++) {
+            int tokenEnd = tokenStart;
+            while (tokenEnd < input.length() && input.charAt(tokenEnd) != DELIMITER) {
+                tokenEnd++;
+            }
+            out[i] = (short) parseLevel(input, tokenStart, tokenEnd);
+            tokenStart = tokenEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Parse a decimal number like "-12", "1.5" or "1.0E-4". Anything unusual (hex, NaN, too many
+     * digits) goes through {@link Float#parseFloat(String)}, which also reports errors.
+     */
+    private static float parseLevel(CharSequence input, int start, int end) {
+        // Float.parseFloat() ignores surrounding whitespace
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+            negative = input.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean hasDigits = false;
+        while (i < end && isDigit(input.charAt(i))) {
+            mantissa = mantissa * 10 + (input.charAt(i++) - '0');
+            if (mantissa != 0) {
+                digits++;
+            }
+            hasDigits = true;
+        }
+        if (i < end && input.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(input.charAt(i))) {
+                mantissa = mantissa * 10 + (input.charAt(i++) - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                scale--;
+                hasDigits = true;
+            }
+        }
+        if (i < end && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+                negativeExponent = input.charAt(i) == '-';
+                i++;
+            }
+            int exponent = 0;
+            int exponentDigits = 0;
+            while (i < end && isDigit(input.charAt(i)) && exponentDigits < 4) {
+                exponent = exponent * 10 + (input.charAt(i++) - '0');
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return parseLevelSlow(input, start, end);
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        if (!hasDigits || i != end || digits > MAX_FAST_DIGITS || mantissa > MAX_FAST_MANTISSA
+                || scale < -(POW10.length - 1) || scale > POW10.length - 1) {
+            return parseLevelSlow(input, start, end);
+        }
+
+        // both operands are exact floats, so the float operation rounds only once, like
+        // Float.parseFloat(). Going through a double would round twice.
+        final float level = scale < 0 ? mantissa / POW10[-scale] : mantissa * POW10[scale];
+        return negative ? -level : level;
+    }
+
+    private static float parseLevelSlow(CharSequence input, int start, int end) {
+        return Float.parseFloat(input.subSequence(start, end).toString());
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Append levels to out in the ';' delimited format read by
+     * {@link #parseBands(CharSequence, float[])}. Whole numbers and levels with at most two
+     * decimals are written without going through {@link Float#toString(float)}, in the same
+     * format it would produce.
+     *
+     * @return out
+     */
+    public static StringBuilder appendLevels(StringBuilder out, float[] levels) {
+        for (int i = 0; i < levels.length; i++) {
+            if (i > 0) {
+                out.append(DELIMITER);
+            }
+            appendLevel(out, levels[i]);
+        }
+        return out;
+    }
+
+    /**
+     * @return out
+     */
+    public static StringBuilder appendLevels(StringBuilder out, short[] levels) {
+        for (int i = 0; i < levels.length; i++) {
+            if (i > 0) {
+                out.append(DELIMITER);
+            }
+            out.append(levels[i]);
+        }
+        return out;
+    }
+
+    private static void appendLevel(StringBuilder out, float level) {
+        // Float.toString() switches to scientific notation outside of this range
+        final float abs = Math.abs(level);
+        if (abs == 0 || (abs >= 1e-3f && abs < 1e7f)) {
+            final long hundredths = Math.round(abs * 100.0);
+            if ((float) (hundredths / 100.0) == abs) {
+                if (level < 0) {
+                    out.append('-');
+                }
+                out.append(hundredths / 100).append('.');
+                final int fraction = (int) (hundredths % 100);
+                if (fraction % 10 == 0) {
+                    out.append(fraction / 10);
+                } else {
+                    if (fraction < 10) {
+                        out.append('0');
+                    }
+                    out.append(fraction);
+                }
+                return;
+            }
+        }
+        out.append(level);
+    }
+
     public static float[] convertDecibelsToMillibels(float[] decibels) {
         if (DEBUG) Log.i(TAG, "++ convertDecibelsToMillibels(" + Arrays.toString(decibels) + ")");
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.eq;
+
+import java.util.Arrays;
+
+/**
+ * Logarithmic frequency axis of the EQ graph for one band configuration.
+ * <p>
+ * Everything which needs transcendental math is computed once when the axis is created: the
+ * projected position of every band, and a sampling grid with its frequencies, positions and
+ * cos/sin(omega) tables. Create a new axis when the band configuration changes; instances are
+ * immutable and can be shared between views. The shared axis has no grid, views which sample
+ * the response derive an axis with a grid for their width through {@link #withGridSize(int)}.
+ */
+public class FrequencyAxis {
+
+    public static final int DEFAULT_GRID_SIZE = 141;
+    public static final double DEFAULT_SAMPLING_RATE = 44100;
+
+    private final float[] mCenterFreqs;
+    private final float[] mBandPositions;
+
+    private final float mMinFreq;
+    private final float mMaxFreq;
+    private final double mMinPos;
+    private final double mPosRange;
+
+    private final double mSamplingRate;
+    private final double[] mGridFreqs;
+    private final float[] mGridPositions;
+    private final double[] mGridCos;
+    private final double[] mGridSin;
+
+    /**
+     * Create an axis without a sampling grid.
+     *
+     * @param centerFreqs  center frequency of each band in Hz
+     * @param samplingRate sampling rate used for the cos/sin(omega) tables of derived grids
+     */
+    public FrequencyAxis(float[] centerFreqs, double samplingRate) {
+        this(centerFreqs, samplingRate, 0);
+    }
+
+    /**
+     * @param centerFreqs  center frequency of each band in Hz
+     * @param samplingRate sampling rate used for the cos/sin(omega) tables
+     * @param gridSize     number of grid points, including both ends of the axis
+     */
+    public FrequencyAxis(float[] centerFreqs, double samplingRate, int gridSize) {
+        final int numBands = centerFreqs.length;
+        mCenterFreqs = Arrays.copyOf(centerFreqs, numBands);
+
+        mMinFreq = mCenterFreqs[0] / 2;
+        mMaxFreq = (float) Math.pow(mCenterFreqs[numBands - 1], 2) / mCenterFreqs[numBands - 2]
+                / 2;
+        mMinPos = Math.log(mMinFreq);
+        mPosRange = Math.log(mMaxFreq) - mMinPos;
+
+        mBandPositions = new float[numBands];
+        for (int i = 0; i < numBands; i++) {
+            mBandPositions[i] = projectX(mCenterFreqs[i]);
+        }
+
+        mSamplingRate = samplingRate;
+        mGridFreqs = new double[gridSize];
+        mGridPositions = new float[gridSize];
+        mGridCos = new double[gridSize];
+        mGridSin = new double[gridSize];
+        for (int i = 0; i < gridSize; i++) {
+            final float pos = gridSize > 1 ? i / (float) (gridSize - 1) : 0;
+            final double freq = reverseProjectX(pos);
+            final double omega = freq / samplingRate * Math.PI * 2;
+            mGridFreqs[i] = freq;
+            mGridPositions[i] = pos;
+            mGridCos[i] = Math.cos(omega);
+            mGridSin[i] = Math.sin(omega);
+        }
+    }
+
+    /**
+     * @return a copy of this axis with a different grid size, or this axis if it already matches
+     */
+    public FrequencyAxis withGridSize(int gridSize) {
+        if (gridSize == mGridFreqs.length) {
+            return this;
+        }
+        return new FrequencyAxis(mCenterFreqs, mSamplingRate, gridSize);
+    }
+
+    /**
+     * Project a frequency onto the axis.
+     *
+     * @param freq frequency in Hz
+     * @return position in [0, 1] for frequencies within the axis range
+     */
+    public float projectX(double freq) {
+        return (float) ((Math.log(freq) - mMinPos) / mPosRange);
+    }
+
+    /**
+     * Inverse of {@link #projectX(double)}.
+     *
+     * @param pos position on the axis
+     * @return frequency in Hz
+     */
+    public double reverseProjectX(float pos) {
+        return Math.exp(pos * mPosRange + mMinPos);
+    }
+
+    /**
+     * Find the band whose center is closest to the given position.
+     *
+     * @param pos position on the axis
+     * @return index of best match
+     */
+    public int findClosestBand(float pos) {
+        int idx = 0;
+        float best = Float.MAX_VALUE;
+        for (int i = 0; i < mBandPositions.length; i++) {
+            final float distance = Math.abs(mBandPositions[i] - pos);
+            if (distance < best) {
+                idx = i;
+                best = distance;
+            }
+        }
+        return idx;
+    }
+
+    public int getNumBands() {
+        return mCenterFreqs.length;
+    }
+
+    public float getCenterFreq(int band) {
+        return mCenterFreqs[band];
+    }
+
+    public float[] getCenterFreqs() {
+        return mCenterFreqs;
+    }
+
+    /**
+     * @return precomputed {@link #projectX(double)} of the band's center frequency
+     */
+    public float getBandPosition(int band) {
+        return mBandPositions[band];
+    }
+
+    public float getMinFreq() {
+        return mMinFreq;
+    }
+
+    public float getMaxFreq() {
+        return mMaxFreq;
+    }
+
+    public double getSamplingRate() {
+        return mSamplingRate;
+    }
+
+    public int getGridSize() {
+        return mGridFreqs.length;
+    }
+
+    public double getGridFrequency(int index) {
+        return mGridFreqs[index];
+    }
+
+    public float getGridPosition(int index) {
+        return mGridPositions[index];
+    }
+
+    /**
+     * @return cos(omega) of every grid point. Must not be modified.
+     */
+    public double[] getGridCos() {
+        return mGridCos;
+    }
+
+    /**
+     * @return sin(omega) of every grid point. Must not be modified.
+     */
+    public double[] getGridSin() {
+        return mGridSin;
+    }
+}
@@ -79,6 +79,9 @@ public class EqualizerFragment extends AudioFxBaseFragment
      */
     private float[] mSelectedPositionBands;
 
+    // scratch levels for preset animations, handed to the EqualizerManager every frame
+    private float[] mAnimatedLevels = new float[0];
+
     // current selected index
     public int mSelectedPosition = 0;
 
@@ -128,6 +131,13 @@ public class EqualizerFragment extends AudioFxBaseFragment
         mPresetPager.setCurrentItemAbsolute(newPage, false);
     }
 
+    private float[] getAnimatedLevels(int bands) {
+        if (mAnimatedLevels.length != bands) {
+            mAnimatedLevels = new float[bands];
+        }
+        return mAnimatedLevels;
+    }
+
     private void removeCurrentCustomPreset(boolean showWarning) {
         if (showWarning) {
             Preset p = mEqManager.getCurrentPreset();
@@ -331,6 +341,11 @@ public class EqualizerFragment extends AudioFxBaseFragment
         }
     }
 
+    @Override
+    public void onBandLevelsChange(float[] levels) {
+        // only the system changes all bands at once, nothing to animate to custom
+    }
+
     @Override
     public void onPresetChanged(int newPresetIndex) {
     }
@@ -403,14 +418,16 @@ public class EqualizerFragment extends AudioFxBaseFragment
                 super.onAnimationUpdate(animator);
 
                 final int N = mEqManager.getNumBands();
+                final float[] levels = getAnimatedLevels(N);
                 for (int i = 0; i < N; i++) { // animate bands
                     float delta = targetBandLevels[i] - mSelectedPositionBands[i];
                     float newBandLevel = mSelectedPositionBands[i]
                             + (delta * animator.getAnimatedFraction());
                     //if (DEBUG_VIEWPAGER) Log.d(TAG, i + ", delta: " + delta + ", newBandLevel:
                     // " + newBandLevel);
-                    mEqManager.setLevel(i, newBandLevel, true);
+                    levels[i] = newBandLevel;
                 }
+                mEqManager.setLevels(levels);
             }
         };
 
@@ -507,13 +524,15 @@ public class EqualizerFragment extends AudioFxBaseFragment
                     float[] finalPresetLevels = mEqManager.getPresetLevels(toPos);
 
                     final int N = mEqManager.getNumBands();
+                    final float[] levels = getAnimatedLevels(N);
                     for (int i = 0; i < N; i++) { // animate bands
                         float delta = finalPresetLevels[i] - mSelectedPositionBands[i];
                         float newBandLevel = mSelectedPositionBands[i] + (delta * positionOffset);
                         //if (DEBUG_VIEWPAGER) Log.d(TAG, i + ", delta: " + delta + ",
                         // newBandLevel: " + newBandLevel);
-                        mEqManager.setLevel(i, newBandLevel, true);
+                        levels[i] = newBandLevel;
                     }
+                    mEqManager.setLevels(levels);
                     mLastOffset = positionOffset;
 
                 }
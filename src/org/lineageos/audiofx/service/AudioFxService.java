@@ -29,6 +29,8 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import org.lineageos.audiofx.backends.EffectSet;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.lang.ref.WeakReference;
 
 /**
@@ -82,14 +84,43 @@ public class AudioFxService extends Service
         }
 
         public void update(int flags) {
+            update(flags, 0);
+        }
+
+        /**
+         * @param cookie async trace cookie from {@link UpdateTrace#begin(String)}, ended once
+         *               the change is committed
+         */
+        public void update(int flags, int cookie) {
             if (checkService()) {
-                mService.get().update(flags);
+                mService.get().update(flags, cookie);
+            } else {
+                UpdateTrace.end(UpdateTrace.UPDATE, cookie);
             }
         }
 
         public void setOverrideLevels(short band, float level) {
+            setOverrideLevels(band, level, 0);
+        }
+
+        public void setOverrideLevels(short band, float level, int cookie) {
             if (checkService()) {
-                mService.get().mSessionManager.setOverrideLevels(band, level);
+                mService.get().mSessionManager.setOverrideLevels(band, level, cookie);
+            } else {
+                UpdateTrace.end(UpdateTrace.OVERRIDE, cookie);
+            }
+        }
+
+        /**
+         * Override all band levels at once
+         *
+         * @param levels level of each band in millibels
+         */
+        public void setOverrideLevels(float[] levels, int cookie) {
+            if (checkService()) {
+                mService.get().mSessionManager.setOverrideLevels(levels, cookie);
+            } else {
+                UpdateTrace.end(UpdateTrace.OVERRIDE, cookie);
             }
         }
 
@@ -178,6 +209,16 @@ public class AudioFxService extends Service
         super.onDestroy();
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        pw.println("AudioFxService state:");
+        pw.print("  current device: ");
+        pw.println(mCurrentDevice == null ? "none" : mCurrentDevice.getId());
+        if (mSessionManager != null) {
+            mSessionManager.dump(pw, "  ");
+        }
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return new LocalBinder(this);
@@ -208,7 +249,7 @@ public class AudioFxService extends Service
     /**
      * Queue up a backend update.
      */
-    private void update(int flags) {
-        mSessionManager.update(flags);
+    private void update(int flags, int cookie) {
+        mSessionManager.update(flags, cookie);
     }
 }
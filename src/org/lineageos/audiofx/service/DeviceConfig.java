@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.service;
+
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_BASS_ENABLE;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_BASS_STRENGTH;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_EQ_PRESET_LEVELS;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_GLOBAL_ENABLE;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_MAXXVOLUME_ENABLE;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_REVERB_PRESET;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_TREBLE_ENABLE;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_TREBLE_STRENGTH;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_VIRTUALIZER_ENABLE;
+import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_VIRTUALIZER_STRENGTH;
+import static org.lineageos.audiofx.Constants.DEVICE_DEFAULT_GLOBAL_ENABLE;
+
+import android.content.SharedPreferences;
+import android.media.audiofx.PresetReverb;
+import android.util.Log;
+
+import org.lineageos.audiofx.eq.EqUtils;
+
+/**
+ * Immutable, pre-parsed snapshot of the effect settings of one output device.
+ * <p>
+ * The preferences store most values as strings; they are parsed once when the snapshot is built
+ * so that applying the configuration to many sessions doesn't parse them again for each one.
+ * Values which fail to parse fall back to their defaults.
+ */
+final class DeviceConfig {
+
+    private static final String TAG = AudioFxService.TAG;
+
+    private final String mDeviceId;
+
+    private final boolean mGlobalEnabled;
+
+    private final float[] mEqLevels;
+
+    private final boolean mBassEnabled;
+    private final short mBassStrength;
+
+    private final short mReverbPreset;
+
+    private final boolean mVirtualizerEnabled;
+    private final short mVirtualizerStrength;
+
+    private final boolean mTrebleEnabled;
+    private final short mTrebleStrength;
+
+    private final boolean mVolumeBoostEnabled;
+
+    private DeviceConfig(String deviceId, SharedPreferences prefs) {
+        mDeviceId = deviceId;
+        mGlobalEnabled = prefs.getBoolean(DEVICE_AUDIOFX_GLOBAL_ENABLE,
+                DEVICE_DEFAULT_GLOBAL_ENABLE);
+
+        float[] eqLevels = null;
+        final String savedPreset = prefs.getString(DEVICE_AUDIOFX_EQ_PRESET_LEVELS, null);
+        if (savedPreset != null) {
+            try {
+                eqLevels = EqUtils.stringBandsToFloats(savedPreset);
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "Invalid equalizer levels for " + deviceId + ": " + savedPreset, e);
+            }
+        }
+        mEqLevels = eqLevels;
+
+        mBassEnabled = prefs.getBoolean(DEVICE_AUDIOFX_BASS_ENABLE, false);
+        mBassStrength = parseShort(prefs, DEVICE_AUDIOFX_BASS_STRENGTH, "0");
+
+        final String reverbPreset = prefs.getString(DEVICE_AUDIOFX_REVERB_PRESET, null);
+        short preset = PresetReverb.PRESET_NONE;
+        if (reverbPreset != null) {
+            try {
+                preset = Short.decode(reverbPreset);
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "Invalid reverb preset for " + deviceId + ": " + reverbPreset, e);
+            }
+        }
+        mReverbPreset = preset;
+
+        mVirtualizerEnabled = prefs.getBoolean(DEVICE_AUDIOFX_VIRTUALIZER_ENABLE, false);
+        mVirtualizerStrength = parseShort(prefs, DEVICE_AUDIOFX_VIRTUALIZER_STRENGTH, "0");
+
+        mTrebleEnabled = prefs.getBoolean(DEVICE_AUDIOFX_TREBLE_ENABLE, false);
+        mTrebleStrength = parseShort(prefs, DEVICE_AUDIOFX_TREBLE_STRENGTH, "0");
+
+        mVolumeBoostEnabled = prefs.getBoolean(DEVICE_AUDIOFX_MAXXVOLUME_ENABLE, false);
+    }
+
+    /**
+     * Read and parse the configuration of a device.
+     *
+     * @param deviceId the device identifier, which is also the name of its preferences
+     * @param prefs    the device preferences
+     */
+    static DeviceConfig fromPrefs(String deviceId, SharedPreferences prefs) {
+        return new DeviceConfig(deviceId, prefs);
+    }
+
+    private static short parseShort(SharedPreferences prefs, String key, String def) {
+        final String value = prefs.getString(key, def);
+        try {
+            return Short.valueOf(value);
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Invalid value for " + key + ": " + value, e);
+            return Short.valueOf(def);
+        }
+    }
+
+    public String getDeviceId() {
+        return mDeviceId;
+    }
+
+    public boolean isGlobalEnabled() {
+        return mGlobalEnabled;
+    }
+
+    /**
+     * @return saved equalizer levels in decibels, or null if none were saved. Must not be
+     * modified.
+     */
+    public float[] getEqLevels() {
+        return mEqLevels;
+    }
+
+    public boolean isBassEnabled() {
+        return mBassEnabled;
+    }
+
+    public short getBassStrength() {
+        return mBassStrength;
+    }
+
+    public short getReverbPreset() {
+        return mReverbPreset;
+    }
+
+    public boolean isVirtualizerEnabled() {
+        return mVirtualizerEnabled;
+    }
+
+    public short getVirtualizerStrength() {
+        return mVirtualizerStrength;
+    }
+
+    public boolean isTrebleEnabled() {
+        return mTrebleEnabled;
+    }
+
+    public short getTrebleStrength() {
+        return mTrebleStrength;
+    }
+
+    public boolean isVolumeBoostEnabled() {
+        return mVolumeBoostEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceConfig [ mDeviceId: " + mDeviceId + " mGlobalEnabled: " + mGlobalEnabled
+                + " ]";
+    }
+}
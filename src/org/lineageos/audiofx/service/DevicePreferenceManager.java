@@ -52,9 +52,11 @@ import org.lineageos.audiofx.R;
 import org.lineageos.audiofx.activity.MasterConfigControl;
 import org.lineageos.audiofx.backends.EffectSet;
 import org.lineageos.audiofx.backends.EffectsFactory;
+import org.lineageos.audiofx.backends.IEffectFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 
@@ -68,11 +70,28 @@ public class DevicePreferenceManager
     private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
 
     private final Context mContext;
+    private final IEffectFactory mEffectFactory;
 
     private AudioDeviceInfo mCurrentDevice;
 
+    /**
+     * Parsed configuration per device identifier, dropped whenever the device's preferences
+     * change. The listeners are kept here too, SharedPreferences only holds them weakly.
+     */
+    private final HashMap<String, DeviceConfig> mConfigCache = new HashMap<>();
+    private final HashMap<String, ConfigInvalidator> mConfigInvalidators = new HashMap<>();
+
     public DevicePreferenceManager(Context context, AudioDeviceInfo device) {
+        this(context, device, new EffectsFactory());
+    }
+
+    /**
+     * @param effectFactory creates the temporary effects the defaults are read from
+     */
+    DevicePreferenceManager(Context context, AudioDeviceInfo device,
+            IEffectFactory effectFactory) {
         mContext = context;
+        mEffectFactory = effectFactory;
         mCurrentDevice = device;
     }
 
@@ -98,6 +117,44 @@ public class DevicePreferenceManager
                 MasterConfigControl.getDeviceIdentifierString(mCurrentDevice), 0);
     }
 
+    /**
+     * @return the parsed configuration of the current output device, built once per
+     * preference change
+     */
+    DeviceConfig getCurrentDeviceConfig() {
+        final String deviceId = MasterConfigControl.getDeviceIdentifierString(mCurrentDevice);
+        synchronized (mConfigCache) {
+            DeviceConfig config = mConfigCache.get(deviceId);
+            if (config == null) {
+                final SharedPreferences prefs = prefsFor(deviceId);
+                if (!mConfigInvalidators.containsKey(deviceId)) {
+                    final ConfigInvalidator invalidator = new ConfigInvalidator(deviceId);
+                    prefs.registerOnSharedPreferenceChangeListener(invalidator);
+                    mConfigInvalidators.put(deviceId, invalidator);
+                }
+                config = DeviceConfig.fromPrefs(deviceId, prefs);
+                mConfigCache.put(deviceId, config);
+                if (DEBUG) Log.d(TAG, "parsed " + config);
+            }
+            return config;
+        }
+    }
+
+    private class ConfigInvalidator implements SharedPreferences.OnSharedPreferenceChangeListener {
+        private final String mDeviceId;
+
+        ConfigInvalidator(String deviceId) {
+            mDeviceId = deviceId;
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+            synchronized (mConfigCache) {
+                mConfigCache.remove(mDeviceId);
+            }
+        }
+    }
+
     public SharedPreferences prefsFor(final String name) {
         return mContext.getSharedPreferences(name, 0);
     }
@@ -138,7 +195,7 @@ public class DevicePreferenceManager
             }
             return;
         }
-        EffectSet temp = new EffectsFactory().createEffectSet(mContext, 0, null);
+        EffectSet temp = mEffectFactory.createEffectSet(mContext, 0, null);
 
         final int numBands = temp.getNumEqualizerBands();
         final int numPresets = temp.getNumEqualizerPresets();
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.service;
+
+import java.util.Arrays;
+
+/**
+ * Moves the EQ override levels towards their targets in a few interpolated steps, one every
+ * {@link #STEP_INTERVAL_MS}, instead of jumping on every drag event.
+ * <p>
+ * Only the latest target of a band matters: a new target restarts the ramp from wherever the
+ * band currently is, and targets set between two steps are never applied. This keeps band
+ * changes smooth and caps the rate of native calls during a drag. Bands whose level isn't known
+ * yet jump straight to their first target.
+ * <p>
+ * Levels are in millibels. Not thread safe, only used by the handler thread.
+ */
+class EqRamp {
+
+    static final long STEP_INTERVAL_MS = 20;
+
+    /** Steps from the current level to a new target */
+    static final int STEPS = 4;
+
+    private float[] mCurrent = new float[0];
+    private float[] mTarget = new float[0];
+    private boolean[] mChanged = new boolean[0];
+    private int mStepsLeft;
+
+    private void ensureBands(int count) {
+        if (count <= mCurrent.length) {
+            return;
+        }
+        final int old = mCurrent.length;
+        mCurrent = Arrays.copyOf(mCurrent, count);
+        mTarget = Arrays.copyOf(mTarget, count);
+        mChanged = Arrays.copyOf(mChanged, count);
+        Arrays.fill(mCurrent, old, count, Float.NaN);
+        Arrays.fill(mTarget, old, count, Float.NaN);
+    }
+
+    /**
+     * Set the level a band should arrive at.
+     */
+    void setTarget(int band, float level) {
+        ensureBands(band + 1);
+        if (mTarget[band] == level) {
+            return;
+        }
+        mTarget[band] = level;
+        mStepsLeft = STEPS;
+    }
+
+    /**
+     * Forget the ramp, the backend now holds these levels.
+     *
+     * @param levels level of each band, or null if unknown
+     */
+    void reset(float[] levels) {
+        mStepsLeft = 0;
+        if (levels == null) {
+            Arrays.fill(mCurrent, Float.NaN);
+            Arrays.fill(mTarget, Float.NaN);
+            return;
+        }
+        ensureBands(levels.length);
+        System.arraycopy(levels, 0, mCurrent, 0, levels.length);
+        System.arraycopy(levels, 0, mTarget, 0, levels.length);
+    }
+
+    /**
+     * Advance every band one step towards its target. Afterwards {@link #hasChanged(int)} tells
+     * which bands have to be sent to the backend.
+     *
+     * @return true if more steps are needed
+     */
+    boolean step() {
+        boolean moving = false;
+        for (int band = 0; band < mCurrent.length; band++) {
+            final float current = mCurrent[band];
+            final float target = mTarget[band];
+            if (Float.isNaN(target) || current == target) {
+                mChanged[band] = false;
+                continue;
+            }
+            if (Float.isNaN(current) || mStepsLeft <= 1) {
+                mCurrent[band] = target;
+            } else {
+                mCurrent[band] = current + (target - current) / mStepsLeft;
+            }
+            mChanged[band] = true;
+            moving |= mCurrent[band] != target;
+        }
+        mStepsLeft = moving ? mStepsLeft - 1 : 0;
+        return moving;
+    }
+
+    int getNumBands() {
+        return mCurrent.length;
+    }
+
+    boolean hasChanged(int band) {
+        return mChanged[band];
+    }
+
+    float getLevel(int band) {
+        return mCurrent[band];
+    }
+}
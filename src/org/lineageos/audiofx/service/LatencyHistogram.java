@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.service;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed power-of-two buckets in microseconds.
+ * <p>
+ * Bucket 0 holds samples under 1us, bucket i holds [2^(i-1), 2^i) us, and the last bucket holds
+ * everything from about 16s up. Recording is lock-free and doesn't allocate, so it is safe to use
+ * from the backend thread and the fan-out workers at the same time.
+ */
+class LatencyHistogram {
+
+    static final int NUM_BUCKETS = 26;
+
+    private final String mName;
+    private final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalMicros = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        mName = name;
+    }
+
+    /**
+     * @param nanos duration of one operation
+     */
+    void record(long nanos) {
+        final long micros = Math.max(0, nanos / 1000);
+        mBuckets.incrementAndGet(bucketFor(micros));
+        mCount.incrementAndGet();
+        mTotalMicros.addAndGet(micros);
+
+        long max;
+        while (micros > (max = mMaxMicros.get())) {
+            if (mMaxMicros.compareAndSet(max, micros)) {
+                break;
+            }
+        }
+    }
+
+    static int bucketFor(long micros) {
+        // number of significant bits: 0 -> 0, 1 -> 1, 2..3 -> 2, 4..7 -> 3, ...
+        return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * @return exclusive upper bound of a bucket in microseconds
+     */
+    static long bucketLimit(int bucket) {
+        return 1L << bucket;
+    }
+
+    long getCount() {
+        return mCount.get();
+    }
+
+    long getBucketCount(int bucket) {
+        return mBuckets.get(bucket);
+    }
+
+    /**
+     * @param fraction e.g. 0.99
+     * @return upper bound in microseconds of the bucket which contains the percentile, or 0 if
+     * nothing was recorded
+     */
+    long getPercentileMicros(double fraction) {
+        final long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= target) {
+                return bucketLimit(i);
+            }
+        }
+        return bucketLimit(NUM_BUCKETS - 1);
+    }
+
+    void dump(PrintWriter pw, String prefix) {
+        final long count = mCount.get();
+        pw.print(prefix);
+        pw.print(mName);
+        pw.print(": count=");
+        pw.print(count);
+        if (count > 0) {
+            pw.print(" mean=");
+            pw.print(mTotalMicros.get() / count);
+            pw.print("us max=");
+            pw.print(mMaxMicros.get());
+            pw.print("us p50<");
+            pw.print(getPercentileMicros(0.5));
+            pw.print("us p90<");
+            pw.print(getPercentileMicros(0.9));
+            pw.print("us p99<");
+            pw.print(getPercentileMicros(0.99));
+            pw.print("us");
+        }
+        pw.println();
+
+        if (count > 0) {
+            pw.print(prefix);
+            pw.print("  buckets (<us:count):");
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                final long n = mBuckets.get(i);
+                if (n > 0) {
+                    pw.print(' ');
+                    pw.print(i == NUM_BUCKETS - 1 ? "inf" : String.valueOf(bucketLimit(i)));
+                    pw.print(':');
+                    pw.print(n);
+                }
+            }
+            pw.println();
+        }
+    }
+}
@@ -15,17 +15,6 @@
  */
 package org.lineageos.audiofx.service;
 
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_BASS_ENABLE;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_BASS_STRENGTH;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_EQ_PRESET_LEVELS;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_GLOBAL_ENABLE;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_MAXXVOLUME_ENABLE;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_REVERB_PRESET;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_TREBLE_ENABLE;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_TREBLE_STRENGTH;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_VIRTUALIZER_ENABLE;
-import static org.lineageos.audiofx.Constants.DEVICE_AUDIOFX_VIRTUALIZER_STRENGTH;
-import static org.lineageos.audiofx.Constants.DEVICE_DEFAULT_GLOBAL_ENABLE;
 import static org.lineageos.audiofx.activity.MasterConfigControl.getDeviceIdentifierString;
 import static org.lineageos.audiofx.service.AudioFxService.ALL_CHANGED;
 import static org.lineageos.audiofx.service.AudioFxService.BASS_BOOST_CHANGED;
@@ -36,20 +25,34 @@ import static org.lineageos.audiofx.service.AudioFxService.VIRTUALIZER_CHANGED;
 import static org.lineageos.audiofx.service.AudioFxService.VOLUME_BOOST_CHANGED;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.media.AudioDeviceInfo;
 import android.media.AudioSystem;
-import android.media.audiofx.PresetReverb;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
+import android.util.PrintWriterPrinter;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
 
+import org.lineageos.audiofx.R;
 import org.lineageos.audiofx.backends.EffectSet;
 import org.lineageos.audiofx.backends.EffectsFactory;
+import org.lineageos.audiofx.backends.IEffectFactory;
 import org.lineageos.audiofx.eq.EqUtils;
 
+import java.io.PrintWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCallback {
 
     private static final String TAG = AudioFxService.TAG;
@@ -58,82 +61,397 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
     private final Context mContext;
     private final Handler mHandler;
     private final DevicePreferenceManager mDevicePrefs;
+    private final IEffectFactory mEffectFactory;
+
+    /**
+     * Sessions are only added and removed on the handler thread, and the registry is never
+     * locked while effects are created or released, so lookups from binder threads don't wait
+     * on native calls.
+     */
+    private final SessionRegistry mSessions = new SessionRegistry();
+
+    /**
+     * All fields ending with L should be locked on {@link #mPendingLock}. It is only held while
+     * pending work is recorded or handed over to the handler thread.
+     */
+    private final Object mPendingLock = new Object();
+
+    /**
+     * Update flags which haven't been pushed to the backend yet, OR-ed together per session.
+     * Everything pending is flushed by a single MSG_UPDATE_DSP.
+     */
+    private SparseIntArray mPendingFlagsL = new SparseIntArray();
+
+    /**
+     * Latest EQ override level per band, handed to {@link #mEqRamp} by the next
+     * MSG_UPDATE_EQ_OVERRIDE.
+     */
+    private SparseArray<Float> mPendingOverridesL = new SparseArray<Float>();
+
+    /**
+     * Sequence number of each pending override, by band. Overrides and EQ_CHANGED updates take
+     * their numbers from mSequenceL as they are recorded, so a flush of new EQ levels can tell
+     * which overrides were sent before them.
+     */
+    private final SparseLongArray mPendingOverrideSequencesL = new SparseLongArray();
+    private long mSequenceL;
+
+    /**
+     * Sequence number of the latest pending EQ_CHANGED update
+     */
+    private long mPendingEqSequenceL;
+
+    /**
+     * Session ids with a MSG_ADD_SESSION in flight. Messages carry the id in arg1, so they can't
+     * be matched with hasMessages(what, object).
+     */
+    private final SparseBooleanArray mPendingAddsL = new SparseBooleanArray();
 
     /**
-     * All fields ending with L should be locked on {@link #mAudioSessionsL}
+     * Trace cookies of the changes merged into the pending updates and overrides
      */
-    private final SparseArray<EffectSet> mAudioSessionsL = new SparseArray<EffectSet>();
+    private UpdateTrace.Pending mPendingUpdateCookiesL =
+            new UpdateTrace.Pending(UpdateTrace.UPDATE);
+    private UpdateTrace.Pending mPendingOverrideCookiesL =
+            new UpdateTrace.Pending(UpdateTrace.OVERRIDE);
+
+    // only touched by the handler thread, swapped with the pending collections on flush
+    private SparseIntArray mFlushFlags = new SparseIntArray();
+    private SparseArray<Float> mFlushOverrides = new SparseArray<Float>();
+    private UpdateTrace.Pending mFlushUpdateCookies = new UpdateTrace.Pending(UpdateTrace.UPDATE);
+    private UpdateTrace.Pending mFlushOverrideCookies =
+            new UpdateTrace.Pending(UpdateTrace.OVERRIDE);
+    private final SparseArray<EffectSet> mSessionSnapshot = new SparseArray<EffectSet>();
+    private final EqRamp mEqRamp = new EqRamp();
 
+    // uptimeMillis() of the last override step, steps are at least EqRamp.STEP_INTERVAL_MS apart
+    private volatile long mLastOverrideStep;
 
-    private AudioDeviceInfo mCurrentDevice = null;
+    private volatile AudioDeviceInfo mCurrentDevice = null;
+
+    /**
+     * Applies a new device to many sessions in parallel. Threads are only kept around while
+     * device switches are happening.
+     */
+    private static final int FAN_OUT_MAX_THREADS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private final ThreadPoolExecutor mFanOutExecutor;
 
     // audio priority handler messages
     private static final int MSG_UPDATE_DSP = 100;
     private static final int MSG_ADD_SESSION = 101;
     private static final int MSG_REMOVE_SESSION = 102;
-    private static final int MSG_UPDATE_FOR_SESSION = 103;
     private static final int MSG_UPDATE_EQ_OVERRIDE = 104;
+    private static final int MSG_PREWARM = 105;
+
+    /**
+     * Whether to keep the current device configuration parsed ahead of new sessions
+     */
+    private final boolean mPrewarm;
+
+    // latency statistics for dump()
+    private final LatencyHistogram mUpdateLatency = new LatencyHistogram("updateBackend");
+    private final LatencyHistogram mCreateLatency = new LatencyHistogram("createEffectSet");
+    private final LatencyHistogram mReleaseLatency = new LatencyHistogram("release");
+    private final LatencyHistogram mOpenLatency = new LatencyHistogram("open to first commit");
+    private final LatencyHistogram mDeviceSwitchLatency = new LatencyHistogram("device switch");
+    private final LatencyHistogram mQueueLatency = new LatencyHistogram("handler queue wait");
 
     public SessionManager(Context context, Handler handler, DevicePreferenceManager devicePrefs,
             AudioDeviceInfo outputDevice) {
+        this(context, handler, devicePrefs, outputDevice, new EffectsFactory());
+    }
+
+    /**
+     * @param effectFactory creates the effects of every new session, replaced by a fake one in
+     *                      the session benchmarks
+     */
+    SessionManager(Context context, Handler handler, DevicePreferenceManager devicePrefs,
+            AudioDeviceInfo outputDevice, IEffectFactory effectFactory) {
         mContext = context;
         mDevicePrefs = devicePrefs;
+        mEffectFactory = effectFactory;
         mCurrentDevice = outputDevice;
         mHandler = new Handler(handler.getLooper(), new AudioServiceHandler());
+
+        mFanOutExecutor = new ThreadPoolExecutor(FAN_OUT_MAX_THREADS, FAN_OUT_MAX_THREADS,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "AudioFx-FanOut-" + mCount.incrementAndGet());
+                    }
+                });
+        mFanOutExecutor.allowCoreThreadTimeOut(true);
+
+        mPrewarm = context.getResources().getBoolean(R.bool.config_prewarmSessions);
+        prewarm();
     }
 
-    public void onDestroy() {
-        synchronized (mAudioSessionsL) {
-            mHandler.removeCallbacksAndMessages(null);
-            mHandler.getLooper().quit();
+    /**
+     * Parse the current device configuration on the handler thread, so that the next session
+     * to open can be committed without touching preferences.
+     */
+    private void prewarm() {
+        if (mPrewarm && !mHandler.hasMessages(MSG_PREWARM)) {
+            mHandler.sendEmptyMessage(MSG_PREWARM);
         }
     }
 
+    public void onDestroy() {
+        mHandler.removeCallbacksAndMessages(null);
+        mHandler.getLooper().quit();
+        mFanOutExecutor.shutdown();
+    }
+
     public void update(int flags) {
+        update(flags, 0);
+    }
+
+    /**
+     * @param cookie async trace cookie of the change, ended once it is committed to every session
+     */
+    public void update(int flags, int cookie) {
         if (mHandler == null) {
+            UpdateTrace.end(UpdateTrace.UPDATE, cookie);
+            return;
+        }
+        final int[] sessionIds = mSessions.getSessionIds();
+        if (sessionIds.length == 0) {
+            // preferences probably changed, get ready for the next session
+            prewarm();
+            UpdateTrace.end(UpdateTrace.UPDATE, cookie);
             return;
         }
-        synchronized (mAudioSessionsL) {
-            mHandler.obtainMessage(MSG_UPDATE_DSP, flags, 0).sendToTarget();
+        synchronized (mPendingLock) {
+            mPendingUpdateCookiesL.add(cookie);
+            if ((flags & EQ_CHANGED) != 0) {
+                mPendingEqSequenceL = ++mSequenceL;
+            }
+            for (int sessionId : sessionIds) {
+                updateSessionLocked(sessionId, flags);
+            }
         }
     }
 
     public void setOverrideLevels(short band, float level) {
-        synchronized (mAudioSessionsL) {
-            mHandler.obtainMessage(MSG_UPDATE_EQ_OVERRIDE, band, 0, level).sendToTarget();
+        setOverrideLevels(band, level, 0);
+    }
+
+    public void setOverrideLevels(short band, float level, int cookie) {
+        synchronized (mPendingLock) {
+            mPendingOverridesL.put(band, level);
+            mPendingOverrideSequencesL.put(band, ++mSequenceL);
+            mPendingOverrideCookiesL.add(cookie);
+            scheduleOverrideStepLocked();
         }
     }
 
-    public void addSession(int stream) {
-        synchronized (mAudioSessionsL) {
-            // Never auto-attach is someone is recording! We don't want to interfere
-            // with any sort of loopback mechanisms.
-            final boolean recording = AudioSystem.isSourceActive(0) || AudioSystem.isSourceActive(
-                    6);
-            if (recording) {
-                Log.w(TAG, "Recording in progress, not performing auto-attach!");
-                return;
+    /**
+     * Override all band levels, applied to every session in a single update.
+     *
+     * @param levels level of each band in millibels
+     */
+    public void setOverrideLevels(float[] levels, int cookie) {
+        synchronized (mPendingLock) {
+            final long sequence = ++mSequenceL;
+            for (int i = 0; i < levels.length; i++) {
+                mPendingOverridesL.put(i, levels[i]);
+                mPendingOverrideSequencesL.put(i, sequence);
             }
-            if (!mHandler.hasMessages(MSG_ADD_SESSION, stream)) {
-                mHandler.removeMessages(MSG_REMOVE_SESSION, stream);
-                mHandler.obtainMessage(MSG_ADD_SESSION, stream).sendToTarget();
-                if (DEBUG) Log.i(TAG, "New audio session: " + stream);
+            mPendingOverrideCookiesL.add(cookie);
+            scheduleOverrideStepLocked();
+        }
+    }
+
+    /**
+     * Make sure an override step is coming, but not sooner than one step interval after the
+     * previous one. Overrides arriving in the meantime are merged into that step.
+     */
+    private void scheduleOverrideStepLocked() {
+        if (!mHandler.hasMessages(MSG_UPDATE_EQ_OVERRIDE)) {
+            final long delay = mLastOverrideStep + EqRamp.STEP_INTERVAL_MS
+                    - SystemClock.uptimeMillis();
+            mHandler.sendEmptyMessageDelayed(MSG_UPDATE_EQ_OVERRIDE, Math.max(0, delay));
+        }
+    }
+
+    /**
+     * Queue an update for a single session, merged with anything already pending for it.
+     */
+    private void updateSessionLocked(int sessionId, int flags) {
+        mPendingFlagsL.put(sessionId, mPendingFlagsL.get(sessionId) | flags);
+        if (!mHandler.hasMessages(MSG_UPDATE_DSP)) {
+            mHandler.sendEmptyMessage(MSG_UPDATE_DSP);
+        }
+    }
+
+    /**
+     * Push all pending updates to the backend, once per session.
+     * <p>
+     * This must only be called from the HandlerThread!
+     */
+    private void flushPendingUpdates() {
+        final SparseIntArray pending;
+        final UpdateTrace.Pending cookies;
+        final long eqSequence;
+        synchronized (mPendingLock) {
+            pending = mPendingFlagsL;
+            mPendingFlagsL = mFlushFlags;
+            mFlushFlags = pending;
+            eqSequence = mPendingEqSequenceL;
+
+            cookies = mPendingUpdateCookiesL;
+            mPendingUpdateCookiesL = mFlushUpdateCookies;
+            mFlushUpdateCookies = cookies;
+        }
+
+        if (DEBUG) {
+            Log.i(TAG, "Updating to configuration: " + getCurrentDeviceIdentifier()
+                    + " pending=" + pending);
+        }
+
+        final DeviceConfig config = mDevicePrefs.getCurrentDeviceConfig();
+        boolean eqChanged = false;
+        for (int i = 0; i < pending.size(); i++) {
+            final EffectSet session = mSessions.get(pending.keyAt(i));
+            if (session != null) {
+                updateBackend(pending.valueAt(i), session, config);
+                eqChanged |= (pending.valueAt(i) & EQ_CHANGED) != 0;
             }
         }
+        if (eqChanged) {
+            resetEqRamp(config, eqSequence);
+        }
+        pending.clear();
+        cookies.endAll();
     }
 
-    public void removeSession(int stream) {
-        synchronized (mAudioSessionsL) {
-            if (!mHandler.hasMessages(MSG_REMOVE_SESSION, stream)) {
-                final EffectSet effects = mAudioSessionsL.get(stream);
-                if (effects != null) {
-                    effects.setMarkedForDeath(true);
-                    mHandler.sendMessageDelayed(
-                            mHandler.obtainMessage(MSG_REMOVE_SESSION, stream),
-                            effects.getReleaseDelay());
-                    if (DEBUG) Log.i(TAG, "Audio session queued for removal: " + stream);
+    /**
+     * The sessions now hold the configured levels, a running override ramp must not move them
+     * back to where it was headed. Overrides still waiting for a step which were sent before the
+     * new levels are dropped as well, later ones go ahead from the new levels.
+     *
+     * @param sequence sequence number of the change that brought the new levels
+     */
+    private void resetEqRamp(DeviceConfig config, long sequence) {
+        synchronized (mPendingLock) {
+            for (int i = mPendingOverridesL.size() - 1; i >= 0; i--) {
+                final int band = mPendingOverridesL.keyAt(i);
+                if (mPendingOverrideSequencesL.get(band) <= sequence) {
+                    mPendingOverridesL.removeAt(i);
+                    mPendingOverrideSequencesL.delete(band);
                 }
             }
+            // cookies aren't kept per band, those of dropped overrides end with the next step
+            if (mPendingOverridesL.size() == 0) {
+                mPendingOverrideCookiesL.endAll();
+                mHandler.removeMessages(MSG_UPDATE_EQ_OVERRIDE);
+            }
+        }
+        final float[] levels = config.getEqLevels();
+        mEqRamp.reset(levels != null ? EqUtils.convertDecibelsToMillibels(levels) : null);
+    }
+
+    /**
+     * Hand the latest EQ override levels to the ramp, and push its next step to every session.
+     * <p>
+     * This must only be called from the HandlerThread!
+     */
+    private void flushPendingOverrides() {
+        final SparseArray<Float> pending;
+        final UpdateTrace.Pending cookies;
+        synchronized (mPendingLock) {
+            pending = mPendingOverridesL;
+            mPendingOverridesL = mFlushOverrides;
+            mFlushOverrides = pending;
+
+            mPendingOverrideSequencesL.clear();
+
+            cookies = mPendingOverrideCookiesL;
+            mPendingOverrideCookiesL = mFlushOverrideCookies;
+            mFlushOverrideCookies = cookies;
+        }
+
+        for (int j = 0; j < pending.size(); j++) {
+            mEqRamp.setTarget(pending.keyAt(j), pending.valueAt(j));
+        }
+        pending.clear();
+        mLastOverrideStep = SystemClock.uptimeMillis();
+        final boolean ramping = mEqRamp.step();
+
+        mSessions.snapshot(mSessionSnapshot);
+        for (int i = 0; i < mSessionSnapshot.size(); i++) {
+            final EffectSet session = mSessionSnapshot.valueAt(i);
+            if (!session.beginUpdate()) {
+                Log.e(TAG, "session " + session + " failed to beginUpdate()");
+                continue;
+            }
+            for (int band = 0; band < mEqRamp.getNumBands(); band++) {
+                if (mEqRamp.hasChanged(band)) {
+                    session.setEqualizerBandLevel((short) band, mEqRamp.getLevel(band));
+                }
+            }
+            if (!session.commitUpdate()) {
+                Log.e(TAG, "session " + session + " failed to commitUpdate()");
+            }
+        }
+        mSessionSnapshot.clear();
+        // the change has reached the sessions, even if the ramp isn't done yet
+        cookies.endAll();
+
+        if (ramping) {
+            synchronized (mPendingLock) {
+                scheduleOverrideStepLocked();
+            }
+        }
+    }
+
+    public void addSession(int stream) {
+        // Never auto-attach is someone is recording! We don't want to interfere
+        // with any sort of loopback mechanisms.
+        if (isRecording()) {
+            Log.w(TAG, "Recording in progress, not performing auto-attach!");
+            return;
+        }
+
+        // Reopened within the release delay: keep the effects we already have. The add
+        // below still goes through in case the handler is releasing them right now.
+        final EffectSet dying = mSessions.get(stream);
+        if (dying != null && dying.isMarkedForDeath()) {
+            dying.setMarkedForDeath(false);
+            mHandler.removeMessages(MSG_REMOVE_SESSION, dying);
+            if (DEBUG) Log.i(TAG, "Rebinding audio session: " + stream);
+        }
+
+        synchronized (mPendingLock) {
+            if (mPendingAddsL.get(stream)) {
+                return;
+            }
+            mPendingAddsL.put(stream, true);
+        }
+        // new sessions go ahead of pending updates, they are playing unprocessed until then
+        mHandler.sendMessageAtFrontOfQueue(mHandler.obtainMessage(MSG_ADD_SESSION, stream, 0,
+                SystemClock.elapsedRealtimeNanos()));
+        if (DEBUG) Log.i(TAG, "New audio session: " + stream);
+    }
+
+    /**
+     * @return whether the default or voice recognition source is recording
+     */
+    boolean isRecording() {
+        return AudioSystem.isSourceActive(0) || AudioSystem.isSourceActive(6);
+    }
+
+    public void removeSession(int stream) {
+        final EffectSet effects = mSessions.get(stream);
+        if (effects != null && !mHandler.hasMessages(MSG_REMOVE_SESSION, effects)) {
+            effects.setMarkedForDeath(true);
+            mHandler.sendMessageDelayed(
+                    mHandler.obtainMessage(MSG_REMOVE_SESSION, stream, 0, effects),
+                    effects.getReleaseDelay());
+            if (DEBUG) Log.i(TAG, "Audio session queued for removal: " + stream);
         }
     }
 
@@ -142,29 +460,37 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
     }
 
     public boolean hasActiveSessions() {
-        synchronized (mAudioSessionsL) {
-            return mAudioSessionsL.size() > 0;
-        }
+        return !mSessions.isEmpty();
     }
 
     EffectSet getEffectForSession(int sessionId) {
-        synchronized (mAudioSessionsL) {
-            return mAudioSessionsL.get(sessionId);
-        }
+        return mSessions.get(sessionId);
     }
 
     /**
      * Update the backend with our changed preferences.
      * <p>
-     * This must only be called from the HandlerThread!
+     * This must only be called from the HandlerThread, or from a fan-out worker while the
+     * HandlerThread waits for it!
+     *
+     * @param config the current device configuration, shared by every session being updated
      */
-    private void updateBackendLocked(int flags, EffectSet session) {
+    private void updateBackend(int flags, EffectSet session, DeviceConfig config) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        Trace.beginSection("SessionManager.updateBackend");
+        try {
+            updateBackendInternal(flags, session, config);
+        } finally {
+            Trace.endSection();
+            mUpdateLatency.record(SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    private void updateBackendInternal(int flags, EffectSet session, DeviceConfig config) {
         if (Looper.getMainLooper().equals(Looper.myLooper())) {
             throw new IllegalStateException("updateBackend must not be called on the UI thread!");
         }
 
-        final SharedPreferences prefs = mDevicePrefs.getCurrentDevicePrefs();
-
         if (DEBUG) {
             Log.i(TAG, "+++ updateBackend() called with flags=[" + flags + "], session=[" + session
                     + "]");
@@ -174,8 +500,7 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
             return;
         }
 
-        final boolean globalEnabled = prefs.getBoolean(DEVICE_AUDIOFX_GLOBAL_ENABLE,
-                DEVICE_DEFAULT_GLOBAL_ENABLE);
+        final boolean globalEnabled = config.isGlobalEnabled();
 
         if ((flags & ALL_CHANGED) > 0) {
             // global bypass toggle
@@ -194,10 +519,9 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
                 if ((flags & EQ_CHANGED) > 0) {
                     // equalizer is always on unless bypassed
                     session.enableEqualizer(true);
-                    String savedPreset = prefs.getString(DEVICE_AUDIOFX_EQ_PRESET_LEVELS, null);
-                    if (savedPreset != null) {
-                        session.setEqualizerLevelsDecibels(
-                                EqUtils.stringBandsToFloats(savedPreset));
+                    final float[] levels = config.getEqLevels();
+                    if (levels != null) {
+                        session.setEqualizerLevelsDecibels(levels);
                     }
                 }
             } catch (Exception e) {
@@ -207,10 +531,8 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
             // bass
             try {
                 if ((flags & BASS_BOOST_CHANGED) > 0 && session.hasBassBoost()) {
-                    boolean enable = prefs.getBoolean(DEVICE_AUDIOFX_BASS_ENABLE, false);
-                    session.enableBassBoost(enable);
-                    session.setBassBoostStrength(Short.valueOf(prefs
-                            .getString(DEVICE_AUDIOFX_BASS_STRENGTH, "0")));
+                    session.enableBassBoost(config.isBassEnabled());
+                    session.setBassBoostStrength(config.getBassStrength());
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error enabling bass boost!", e);
@@ -219,8 +541,7 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
             // reverb
             try {
                 if ((flags & REVERB_CHANGED) > 0 && session.hasReverb()) {
-                    short preset = Short.decode(prefs.getString(DEVICE_AUDIOFX_REVERB_PRESET,
-                            String.valueOf(PresetReverb.PRESET_NONE)));
+                    final short preset = config.getReverbPreset();
                     session.enableReverb(preset > 0);
                     session.setReverbPreset(preset);
                 }
@@ -231,10 +552,8 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
             // virtualizer
             try {
                 if ((flags & VIRTUALIZER_CHANGED) > 0 && session.hasVirtualizer()) {
-                    boolean enable = prefs.getBoolean(DEVICE_AUDIOFX_VIRTUALIZER_ENABLE, false);
-                    session.enableVirtualizer(enable);
-                    session.setVirtualizerStrength(Short.valueOf(prefs.getString(
-                            DEVICE_AUDIOFX_VIRTUALIZER_STRENGTH, "0")));
+                    session.enableVirtualizer(config.isVirtualizerEnabled());
+                    session.setVirtualizerStrength(config.getVirtualizerStrength());
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error enabling virtualizer!");
@@ -244,10 +563,8 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
             try {
                 if ((flags & TREBLE_BOOST_CHANGED) > 0 && session.hasTrebleBoost()) {
                     // treble
-                    boolean enable = prefs.getBoolean(DEVICE_AUDIOFX_TREBLE_ENABLE, false);
-                    session.enableTrebleBoost(enable);
-                    session.setTrebleBoostStrength(Short.valueOf(
-                            prefs.getString(DEVICE_AUDIOFX_TREBLE_STRENGTH, "0")));
+                    session.enableTrebleBoost(config.isTrebleEnabled());
+                    session.setTrebleBoostStrength(config.getTrebleStrength());
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error enabling treble boost!", e);
@@ -256,8 +573,7 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
             try {
                 if ((flags & VOLUME_BOOST_CHANGED) > 0 && session.hasVolumeBoost()) {
                     // maxx volume
-                    session.enableVolumeBoost(
-                            prefs.getBoolean(DEVICE_AUDIOFX_MAXXVOLUME_ENABLE, false));
+                    session.enableVolumeBoost(config.isVolumeBoostEnabled());
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error enabling volume boost!", e);
@@ -278,112 +594,123 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
 
         @Override
         public boolean handleMessage(Message msg) {
-            synchronized (mAudioSessionsL) {
-                EffectSet session = null;
-                Integer sessionId = 0;
-                int flags = 0;
-
-                switch (msg.what) {
-                    case MSG_ADD_SESSION:
-                        /**
-                         * msg.obj = sessionId
-                         */
-                        sessionId = (Integer) msg.obj;
-                        if (sessionId == null || sessionId <= 0) {
-                            break;
-                        }
-
-                        session = mAudioSessionsL.get(sessionId);
-                        if (session == null) {
-                            try {
-                                session = new EffectsFactory()
-                                        .createEffectSet(mContext, sessionId, mCurrentDevice);
-                            } catch (Exception e) {
-                                Log.e(TAG, "couldn't create effects for session id: " + sessionId,
-                                        e);
-                                break;
-                            }
-                            mAudioSessionsL.put(sessionId, session);
-                            if (DEBUG) Log.w(TAG, "added new EffectSet for sessionId=" + sessionId);
-                            updateBackendLocked(ALL_CHANGED, session);
-                        } else {
-                            session.setMarkedForDeath(false);
-                        }
-                        break;
-
-                    case MSG_REMOVE_SESSION:
-                        /**
-                         * msg.obj = sessionId
-                         */
-                        sessionId = (Integer) msg.obj;
-                        if (sessionId == null || sessionId <= 0) {
-                            break;
-                        }
-
-                        session = mAudioSessionsL.get(sessionId);
-                        if (session != null && session.isMarkedForDeath()) {
-                            mHandler.removeMessages(MSG_UPDATE_FOR_SESSION, sessionId);
-                            session.release();
-                            mAudioSessionsL.remove(sessionId);
-                            if (DEBUG) Log.w(TAG, "removed and released sessionId=" + sessionId);
-                        }
-
-                        break;
+            Trace.beginSection(getTraceName(msg.what));
+            try {
+                return handleMessageInternal(msg);
+            } finally {
+                Trace.endSection();
+            }
+        }
 
-                    case MSG_UPDATE_DSP:
-                        /**
-                         * msg.arg1 = update what flags
-                         */
-                        flags = msg.arg1;
+        private String getTraceName(int what) {
+            switch (what) {
+                case MSG_UPDATE_DSP:
+                    return "SessionManager.MSG_UPDATE_DSP";
+                case MSG_ADD_SESSION:
+                    return "SessionManager.MSG_ADD_SESSION";
+                case MSG_REMOVE_SESSION:
+                    return "SessionManager.MSG_REMOVE_SESSION";
+                case MSG_UPDATE_EQ_OVERRIDE:
+                    return "SessionManager.MSG_UPDATE_EQ_OVERRIDE";
+                case MSG_PREWARM:
+                    return "SessionManager.MSG_PREWARM";
+                default:
+                    return "SessionManager.handleMessage";
+            }
+        }
 
-                        final String mode = getCurrentDeviceIdentifier();
-                        if (DEBUG) Log.i(TAG, "Updating to configuration: " + mode);
+        private boolean handleMessageInternal(Message msg) {
+            if (msg.getWhen() > 0) {
+                // zero for messages posted at the front of the queue
+                mQueueLatency.record(
+                        (SystemClock.uptimeMillis() - msg.getWhen()) * 1000000L);
+            }
 
-                        final int N = mAudioSessionsL.size();
-                        for (int i = 0; i < N; i++) {
-                            sessionId = mAudioSessionsL.keyAt(i);
-                            mHandler.obtainMessage(MSG_UPDATE_FOR_SESSION, flags, 0,
-                                    sessionId).sendToTarget();
-                        }
+            EffectSet session = null;
+            int sessionId = 0;
+
+            switch (msg.what) {
+                case MSG_ADD_SESSION:
+                    /**
+                     * msg.arg1 = sessionId
+                     * msg.obj = elapsedRealtimeNanos() of the open request
+                     */
+                    sessionId = msg.arg1;
+                    synchronized (mPendingLock) {
+                        mPendingAddsL.delete(sessionId);
+                    }
+                    if (sessionId <= 0) {
                         break;
+                    }
 
-                    case MSG_UPDATE_FOR_SESSION:
-                        /**
-                         * msg.arg1 = update what flags
-                         * msg.arg2 = unused
-                         * msg.obj = session id integer (for consistency)
-                         */
-                        sessionId = (Integer) msg.obj;
-                        flags = msg.arg1;
-
-                        if (sessionId == null || sessionId <= 0) {
+                    session = mSessions.get(sessionId);
+                    if (session == null) {
+                        final long start = SystemClock.elapsedRealtimeNanos();
+                        try {
+                            session = mEffectFactory
+                                    .createEffectSet(mContext, sessionId, mCurrentDevice);
+                            mCreateLatency.record(SystemClock.elapsedRealtimeNanos() - start);
+                        } catch (Exception e) {
+                            Log.e(TAG, "couldn't create effects for session id: " + sessionId,
+                                    e);
                             break;
                         }
-
-                        String device = getCurrentDeviceIdentifier();
+                        mSessions.put(sessionId, session);
+                        if (DEBUG) Log.w(TAG, "added new EffectSet for sessionId=" + sessionId);
+                        updateBackend(ALL_CHANGED, session,
+                                mDevicePrefs.getCurrentDeviceConfig());
+                        final long openLatency =
+                                SystemClock.elapsedRealtimeNanos() - (Long) msg.obj;
+                        mOpenLatency.record(openLatency);
                         if (DEBUG) {
-                            Log.i(TAG, "updating DSP for sessionId=" + sessionId +
-                                    ", device=" + device + " flags=" + flags);
+                            Log.i(TAG, "sessionId=" + sessionId + " committed "
+                                    + openLatency / 1000000 + "ms after open");
                         }
-
-                        session = mAudioSessionsL.get(sessionId);
-                        if (session != null) {
-                            updateBackendLocked(flags, session);
+                    } else {
+                        session.setMarkedForDeath(false);
+                    }
+                    break;
+
+                case MSG_REMOVE_SESSION:
+                    /**
+                     * msg.arg1 = sessionId
+                     * msg.obj = the EffectSet to release
+                     */
+                    sessionId = msg.arg1;
+                    session = (EffectSet) msg.obj;
+                    if (session == mSessions.get(sessionId) && session.isMarkedForDeath()) {
+                        mSessions.remove(sessionId);
+                        synchronized (mPendingLock) {
+                            mPendingFlagsL.delete(sessionId);
                         }
-                        break;
+                        final long start = SystemClock.elapsedRealtimeNanos();
+                        session.release();
+                        mReleaseLatency.record(SystemClock.elapsedRealtimeNanos() - start);
+                        if (DEBUG) Log.w(TAG, "removed and released sessionId=" + sessionId);
+                    }
 
-                    case MSG_UPDATE_EQ_OVERRIDE:
-                        for (int i = 0; i < mAudioSessionsL.size(); i++) {
-                            sessionId = mAudioSessionsL.keyAt(i);
-                            session = mAudioSessionsL.get(sessionId);
-                            if (session != null) {
-                                session.setEqualizerBandLevel((short) msg.arg1, (float) msg.obj);
-                            }
-                        }
-                        break;
-                }
-                return true;
+                    break;
+
+                case MSG_PREWARM:
+                    mDevicePrefs.getCurrentDeviceConfig();
+                    break;
+
+                case MSG_UPDATE_DSP:
+                    /**
+                     * pending flags are in mPendingFlagsL
+                     */
+                    flushPendingUpdates();
+                    break;
+
+                case MSG_UPDATE_EQ_OVERRIDE:
+                    /**
+                     * pending levels are in mPendingOverridesL, further steps of the ramp
+                     * reschedule this message
+                     */
+                    flushPendingOverrides();
+                    break;
             }
+            return true;
         }
     }
 
@@ -392,22 +719,120 @@ class SessionManager implements AudioOutputChangeListener.AudioOutputChangedCall
      */
     @Override
     public void onAudioOutputChanged(boolean firstChange, AudioDeviceInfo outputDevice) {
-        synchronized (mAudioSessionsL) {
-            if (mCurrentDevice == null ||
-                    (outputDevice != null && mCurrentDevice.getId() != outputDevice.getId())) {
-                mCurrentDevice = outputDevice;
+        if (mCurrentDevice == null ||
+                (outputDevice != null && mCurrentDevice.getId() != outputDevice.getId())) {
+            mCurrentDevice = outputDevice;
+        }
+
+        // everything pending is about to be applied to every session
+        final UpdateTrace.Pending cookies;
+        final long sequence;
+        synchronized (mPendingLock) {
+            mPendingFlagsL.clear();
+            sequence = mSequenceL;
+            cookies = mPendingUpdateCookiesL;
+            mPendingUpdateCookiesL = mFlushUpdateCookies;
+            mFlushUpdateCookies = cookies;
+        }
+        Trace.beginSection("SessionManager.onAudioOutputChanged");
+
+        final long start = SystemClock.elapsedRealtimeNanos();
+        final AudioDeviceInfo device = mCurrentDevice;
+        final DeviceConfig config = mDevicePrefs.getCurrentDeviceConfig();
+        resetEqRamp(config, sequence);
+
+        // Update all the sessions for this output which are moving
+        mSessions.snapshot(mSessionSnapshot);
+        final int N = mSessionSnapshot.size();
+        if (N == 1) {
+            applyDevice(mSessionSnapshot.valueAt(0), device, config);
+        } else if (N > 1) {
+            // Each session is handled start to finish by one worker, and the handler thread
+            // waits for all of them, so nothing else can reorder work for any session.
+            final CountDownLatch done = new CountDownLatch(N);
+            for (int i = 0; i < N; i++) {
+                final EffectSet session = mSessionSnapshot.valueAt(i);
+                mFanOutExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            applyDevice(session, device, config);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted while applying device to sessions", e);
+                Thread.currentThread().interrupt();
             }
+        }
+        mSessionSnapshot.clear();
+        cookies.endAll();
+        Trace.endSection();
+
+        final long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        mDeviceSwitchLatency.record(elapsed);
+        Log.i(TAG, "Applied " + config.getDeviceId() + " to " + N + " sessions in "
+                + elapsed / 1000000 + "ms");
+    }
 
-            EffectSet session = null;
+    LatencyHistogram getUpdateLatency() {
+        return mUpdateLatency;
+    }
 
-            // Update all the sessions for this output which are moving
-            final int N = mAudioSessionsL.size();
-            for (int i = 0; i < N; i++) {
-                session = mAudioSessionsL.valueAt(i);
+    /**
+     * @return whether a step of the override ramp is still waiting on the handler
+     */
+    boolean hasPendingOverrideStep() {
+        return mHandler.hasMessages(MSG_UPDATE_EQ_OVERRIDE);
+    }
 
-                session.setDevice(mCurrentDevice);
-                updateBackendLocked(ALL_CHANGED, session);
-            }
+    void dump(PrintWriter pw, String prefix) {
+        pw.print(prefix);
+        pw.print("current device: ");
+        pw.println(getCurrentDeviceIdentifier());
+        pw.print(prefix);
+        pw.print("sessions: ");
+        pw.println(mSessions.getSessionIds().length);
+        synchronized (mPendingLock) {
+            pw.print(prefix);
+            pw.print("pending updates: ");
+            pw.print(mPendingFlagsL);
+            pw.print(" overrides: ");
+            pw.print(mPendingOverridesL.size());
+            pw.print(" adds: ");
+            pw.println(mPendingAddsL.size());
+        }
+
+        pw.print(prefix);
+        pw.println("latency:");
+        final String histogramPrefix = prefix + "  ";
+        mUpdateLatency.dump(pw, histogramPrefix);
+        mCreateLatency.dump(pw, histogramPrefix);
+        mReleaseLatency.dump(pw, histogramPrefix);
+        mOpenLatency.dump(pw, histogramPrefix);
+        mDeviceSwitchLatency.dump(pw, histogramPrefix);
+        mQueueLatency.dump(pw, histogramPrefix);
+
+        pw.print(prefix);
+        pw.println("native calls:");
+        EffectSet.dumpStats(pw, prefix + "  ");
+
+        pw.print(prefix);
+        pw.println("backend queue:");
+        mHandler.getLooper().dump(new PrintWriterPrinter(pw), prefix + "  ");
+    }
+
+    private void applyDevice(EffectSet session, AudioDeviceInfo device, DeviceConfig config) {
+        try {
+            session.setDevice(device);
+            updateBackend(ALL_CHANGED, session, config);
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying device to " + session, e);
         }
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.service;
+
+import android.util.SparseArray;
+
+import org.lineageos.audiofx.backends.EffectSet;
+
+/**
+ * Session id to {@link EffectSet} map, striped so that lookups only contend with writers of the
+ * same stripe.
+ * <p>
+ * Each stripe is a SparseArray guarded by its own monitor, which is only held for the duration
+ * of a single map operation. Effects must be created and released outside of the registry.
+ */
+final class SessionRegistry {
+
+    // must be a power of two
+    private static final int STRIPES = 8;
+
+    private final SparseArray<EffectSet>[] mStripes;
+
+    @SuppressWarnings("unchecked")
+    SessionRegistry() {
+        mStripes = new SparseArray[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            mStripes[i] = new SparseArray<EffectSet>();
+        }
+    }
+
+    private SparseArray<EffectSet> stripeFor(int sessionId) {
+        // session ids are handed out sequentially, so the low bits spread well
+        return mStripes[sessionId & (STRIPES - 1)];
+    }
+
+    EffectSet get(int sessionId) {
+        final SparseArray<EffectSet> stripe = stripeFor(sessionId);
+        synchronized (stripe) {
+            return stripe.get(sessionId);
+        }
+    }
+
+    void put(int sessionId, EffectSet session) {
+        final SparseArray<EffectSet> stripe = stripeFor(sessionId);
+        synchronized (stripe) {
+            stripe.put(sessionId, session);
+        }
+    }
+
+    /**
+     * @return the removed session, or null if there was none
+     */
+    EffectSet remove(int sessionId) {
+        final SparseArray<EffectSet> stripe = stripeFor(sessionId);
+        synchronized (stripe) {
+            final EffectSet session = stripe.get(sessionId);
+            stripe.remove(sessionId);
+            return session;
+        }
+    }
+
+    boolean isEmpty() {
+        for (SparseArray<EffectSet> stripe : mStripes) {
+            synchronized (stripe) {
+                if (stripe.size() > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return ids of all registered sessions. Stripes are read one at a time, so the result is
+     * not an atomic snapshot of the whole registry.
+     */
+    int[] getSessionIds() {
+        int count = 0;
+        int[] ids = new int[0];
+        for (SparseArray<EffectSet> stripe : mStripes) {
+            synchronized (stripe) {
+                final int size = stripe.size();
+                if (count + size > ids.length) {
+                    final int[] grown = new int[count + size];
+                    System.arraycopy(ids, 0, grown, 0, count);
+                    ids = grown;
+                }
+                for (int i = 0; i < size; i++) {
+                    ids[count++] = stripe.keyAt(i);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Copy all registered sessions into out, replacing its contents.
+     */
+    void snapshot(SparseArray<EffectSet> out) {
+        out.clear();
+        for (SparseArray<EffectSet> stripe : mStripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.size(); i++) {
+                    out.put(stripe.keyAt(i), stripe.valueAt(i));
+                }
+            }
+        }
+    }
+}
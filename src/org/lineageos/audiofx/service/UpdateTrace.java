@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.service;
+
+import android.os.Trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Async trace sections which follow a single settings change from the UI to the backend.
+ * <p>
+ * A section is begun where the change enters the service API and ended once the backend has
+ * committed it to every session, so in a Perfetto capture each change shows up as one slice
+ * spanning the binder, the handler queue and the effect calls. Changes which are merged into a
+ * single flush all end at the same time.
+ * <p>
+ * Cookie 0 means "not traced": it is returned while tracing is off, and ignored everywhere.
+ */
+public final class UpdateTrace {
+
+    /**
+     * Preference change, from {@code MasterConfigControl.updateService()} to commitUpdate()
+     */
+    public static final String UPDATE = "AudioFx update";
+
+    /**
+     * EQ override from the system, from the UI to the last session's band level
+     */
+    public static final String OVERRIDE = "AudioFx override";
+
+    private static final AtomicInteger sNextCookie = new AtomicInteger();
+
+    private UpdateTrace() {
+    }
+
+    /**
+     * @return the cookie to end the section with, or 0 if tracing is off
+     */
+    public static int begin(String name) {
+        if (!Trace.isEnabled()) {
+            return 0;
+        }
+        int cookie;
+        do {
+            cookie = sNextCookie.incrementAndGet();
+        } while (cookie == 0);
+        Trace.beginAsyncSection(name, cookie);
+        return cookie;
+    }
+
+    public static void end(String name, int cookie) {
+        if (cookie != 0) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    /**
+     * Cookies of changes waiting for the same flush. Not thread safe.
+     */
+    static final class Pending {
+        private final String mName;
+        private int[] mCookies = new int[8];
+        private int mCount;
+
+        Pending(String name) {
+            mName = name;
+        }
+
+        void add(int cookie) {
+            if (cookie == 0) {
+                return;
+            }
+            if (mCount == mCookies.length) {
+                final int[] grown = new int[mCount * 2];
+                System.arraycopy(mCookies, 0, grown, 0, mCount);
+                mCookies = grown;
+            }
+            mCookies[mCount++] = cookie;
+        }
+
+        int size() {
+            return mCount;
+        }
+
+        /**
+         * End the sections of every pending change, and forget them.
+         */
+        void endAll() {
+            for (int i = 0; i < mCount; i++) {
+                Trace.endAsyncSection(mName, mCookies[i]);
+            }
+            mCount = 0;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.widget;
+
+/**
+ * Text drawn next to each band of the EQ graph.
+ * <p>
+ * Frequency labels are built once per band configuration. Level labels are written into a
+ * per-band char buffer, and only when the value shown (rounded to 0.1 dB) changes, so drawing a
+ * frame does not allocate.
+ */
+public class BandLabels {
+
+    // "+" or "-", up to three integer digits, ".", one decimal
+    private static final int MAX_LEVEL_CHARS = 6;
+
+    private String[] mFreqLabels = new String[0];
+    private char[][] mLevelChars = new char[0][];
+    private int[] mLevelLengths = new int[0];
+    private int[] mLevelTenths = new int[0];
+
+    /**
+     * Rebuild the frequency labels and forget all level labels.
+     *
+     * @param centerFreqs center frequency of each band in Hz
+     */
+    public void setCenterFreqs(float[] centerFreqs) {
+        final int numBands = centerFreqs.length;
+        mFreqLabels = new String[numBands];
+        mLevelChars = new char[numBands][MAX_LEVEL_CHARS];
+        mLevelLengths = new int[numBands];
+        mLevelTenths = new int[numBands];
+        for (int i = 0; i < numBands; i++) {
+            mFreqLabels[i] = formatFrequency(centerFreqs[i]);
+            // force the first update to write the buffer
+            mLevelTenths[i] = Integer.MIN_VALUE;
+        }
+    }
+
+    public int getNumBands() {
+        return mFreqLabels.length;
+    }
+
+    public String getFrequencyLabel(int band) {
+        return mFreqLabels[band];
+    }
+
+    /**
+     * Update the level label of a band.
+     *
+     * @param band the band index
+     * @param dB   the level in decibels
+     * @return whether the label text changed
+     */
+    public boolean setLevel(int band, float dB) {
+        final int tenths = Math.round(dB * 10);
+        if (mLevelTenths[band] == tenths) {
+            return false;
+        }
+        mLevelTenths[band] = tenths;
+        mLevelLengths[band] = formatTenths(tenths, mLevelChars[band]);
+        return true;
+    }
+
+    /**
+     * @return the level label buffer of a band, valid up to {@link #getLevelLength(int)}
+     */
+    public char[] getLevelChars(int band) {
+        return mLevelChars[band];
+    }
+
+    public int getLevelLength(int band) {
+        return mLevelLengths[band];
+    }
+
+    /**
+     * Format a center frequency the way the EQ views label it: whole Hz below 1 kHz, whole kHz
+     * with a "k" suffix above.
+     */
+    public static String formatFrequency(float freq) {
+        return freq < 1000 ? Integer.toString(Math.round(freq))
+                : Math.round(freq / 1000) + "k";
+    }
+
+    /**
+     * Write a signed level with one decimal, e.g. "+1.5" or "-12.0".
+     *
+     * @param tenths the level in tenths of a dB
+     * @param out    buffer of at least {@link #MAX_LEVEL_CHARS} chars
+     * @return number of chars written
+     */
+    static int formatTenths(int tenths, char[] out) {
+        int pos = 0;
+        out[pos++] = tenths < 0 ? '-' : '+';
+        final int abs = Math.min(Math.abs(tenths), 9999);
+        final int whole = abs / 10;
+        if (whole >= 100) {
+            out[pos++] = (char) ('0' + whole / 100);
+        }
+        if (whole >= 10) {
+            out[pos++] = (char) ('0' + (whole / 10) % 10);
+        }
+        out[pos++] = (char) ('0' + whole % 10);
+        out[pos++] = '.';
+        out[pos++] = (char) ('0' + abs % 10);
+        return pos;
+    }
+}
@@ -21,26 +21,97 @@ package org.lineageos.audiofx.widget;
  * @author alankila
  */
 public class Biquad {
-    private Complex mB0, mB1, mB2, mA0, mA1, mA2;
+    private double mB0, mB1, mB2, mA0, mA1, mA2;
 
     public void setHighShelf(double centerFrequency, double samplingFrequency,
             double dbGain, double slope) {
         double w0 = 2 * Math.PI * centerFrequency / samplingFrequency;
         double a = Math.pow(10, dbGain / 40);
         double alpha = Math.sin(w0) / 2 * Math.sqrt((a + 1 / a) * (1 / slope - 1) + 2);
+        double cosW0 = Math.cos(w0);
+        double sqrtA = Math.sqrt(a);
 
-        mB0 = new Complex(a * ((a + 1) + (a - 1) * Math.cos(w0) + 2 * Math.sqrt(a) * alpha), 0);
-        mB1 = new Complex(-2 * a * ((a - 1) + (a + 1) * Math.cos(w0)), 0);
-        mB2 = new Complex(a * ((a + 1) + (a - 1) * Math.cos(w0) - 2 * Math.sqrt(a) * alpha), 0);
-        mA0 = new Complex((a + 1) - (a - 1) * Math.cos(w0) + 2 * Math.sqrt(a) * alpha, 0);
-        mA1 = new Complex(2 * ((a - 1) - (a + 1) * Math.cos(w0)), 0);
-        mA2 = new Complex((a + 1) - (a - 1) * Math.cos(w0) - 2 * Math.sqrt(a) * alpha, 0);
+        mB0 = a * ((a + 1) + (a - 1) * cosW0 + 2 * sqrtA * alpha);
+        mB1 = -2 * a * ((a - 1) + (a + 1) * cosW0);
+        mB2 = a * ((a + 1) + (a - 1) * cosW0 - 2 * sqrtA * alpha);
+        mA0 = (a + 1) - (a - 1) * cosW0 + 2 * sqrtA * alpha;
+        mA1 = 2 * ((a - 1) - (a + 1) * cosW0);
+        mA2 = (a + 1) - (a - 1) * cosW0 - 2 * sqrtA * alpha;
+    }
+
+    public void setLowShelf(double centerFrequency, double samplingFrequency,
+            double dbGain, double slope) {
+        double w0 = 2 * Math.PI * centerFrequency / samplingFrequency;
+        double a = Math.pow(10, dbGain / 40);
+        double alpha = Math.sin(w0) / 2 * Math.sqrt((a + 1 / a) * (1 / slope - 1) + 2);
+        double cosW0 = Math.cos(w0);
+        double sqrtA = Math.sqrt(a);
+
+        mB0 = a * ((a + 1) - (a - 1) * cosW0 + 2 * sqrtA * alpha);
+        mB1 = 2 * a * ((a - 1) - (a + 1) * cosW0);
+        mB2 = a * ((a + 1) - (a - 1) * cosW0 - 2 * sqrtA * alpha);
+        mA0 = (a + 1) + (a - 1) * cosW0 + 2 * sqrtA * alpha;
+        mA1 = -2 * ((a - 1) + (a + 1) * cosW0);
+        mA2 = (a + 1) + (a - 1) * cosW0 - 2 * sqrtA * alpha;
+    }
+
+    /**
+     * Copy the coefficients, divided by a0, for running the filter on samples.
+     *
+     * @param out    receives b0, b1, b2, a1 and a2 in that order
+     * @param offset index of b0 in out
+     */
+    public void getNormalizedCoefficients(double[] out, int offset) {
+        out[offset] = mB0 / mA0;
+        out[offset + 1] = mB1 / mA0;
+        out[offset + 2] = mB2 / mA0;
+        out[offset + 3] = mA1 / mA0;
+        out[offset + 4] = mA2 / mA0;
     }
 
     public Complex evaluateTransfer(Complex z) {
         Complex zSquared = z.mul(z);
-        Complex nom = mB0.add(mB1.div(z)).add(mB2.div(zSquared));
-        Complex den = mA0.add(mA1.div(z)).add(mA2.div(zSquared));
+        Complex nom = new Complex(mB0, 0).add(new Complex(mB1, 0).div(z))
+                .add(new Complex(mB2, 0).div(zSquared));
+        Complex den = new Complex(mA0, 0).add(new Complex(mA1, 0).div(z))
+                .add(new Complex(mA2, 0).div(zSquared));
         return nom.div(den);
     }
+
+    /**
+     * Evaluate |H(z)|^2 on the unit circle, z = e^(j*omega), without allocating.
+     * <p>
+     * The coefficients are real, so the numerator and denominator can be expanded directly:
+     * b0 + b1 * z^-1 + b2 * z^-2 with z^-n = cos(n*omega) - j*sin(n*omega).
+     *
+     * @param cosOmega cos(omega) of the normalized angular frequency
+     * @param sinOmega sin(omega) of the normalized angular frequency
+     * @return squared magnitude of the transfer function
+     */
+    public double evaluateMagnitudeSquared(double cosOmega, double sinOmega) {
+        final double cos2Omega = 2 * cosOmega * cosOmega - 1;
+        final double sin2Omega = 2 * sinOmega * cosOmega;
+
+        final double nomRe = mB0 + mB1 * cosOmega + mB2 * cos2Omega;
+        final double nomIm = mB1 * sinOmega + mB2 * sin2Omega;
+        final double denRe = mA0 + mA1 * cosOmega + mA2 * cos2Omega;
+        final double denIm = mA1 * sinOmega + mA2 * sin2Omega;
+
+        return (nomRe * nomRe + nomIm * nomIm) / (denRe * denRe + denIm * denIm);
+    }
+
+    /**
+     * Evaluate |H(z)|^2 for a whole frequency grid into a caller-supplied array.
+     *
+     * @param cosOmega cos(omega) for each grid point
+     * @param sinOmega sin(omega) for each grid point
+     * @param out      receives the squared magnitude for each grid point
+     * @param count    number of grid points to evaluate
+     */
+    public void evaluateMagnitudeSquared(double[] cosOmega, double[] sinOmega, double[] out,
+            int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = evaluateMagnitudeSquared(cosOmega[i], sinOmega[i]);
+        }
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.widget;
+
+/**
+ * Picks the response grid which is evaluated for a frame, and which of its points are drawn.
+ * <p>
+ * The full grid is sized from the pixel width of the view, and resting frames evaluate and draw
+ * all of it. While animating, the number of points is a budget which starts at a quarter of the
+ * full grid, shrinks when the previous frame went over its time target and grows back, up to half
+ * the full grid, when there is headroom. The budget picks the coarsest grid of the halving ladder
+ * n, (n - 1) / 2 + 1, ... which still holds that many points, so slow devices evaluate fewer points
+ * as well as drawing fewer. Within the budget, points of that grid are spread half uniformly and
+ * half by curvature, so band transitions get more points than flat regions.
+ */
+public class CurveSampler {
+
+    /** Approximate horizontal spacing between grid points, in pixels */
+    static final int PIXELS_PER_GRID_POINT = 4;
+    static final int MIN_GRID_SIZE = 36;
+    static final int MAX_GRID_SIZE = 512;
+
+    /** Fewest points drawn during animations, whatever the frame time */
+    static final int MIN_BUDGET = 24;
+
+    /** Time we are willing to spend on a frame while animating */
+    static final long FRAME_TARGET_NANOS = 6_000_000L;
+
+    private int mGridSize;
+    private int mBudget;
+    private int[] mSelection = new int[0];
+    private double[] mCurvature = new double[0];
+    private int mCount;
+
+    /**
+     * @param widthPx width of the view in pixels
+     * @return grid size to sample the response on
+     */
+    public static int gridSizeForWidth(int widthPx) {
+        return Math.max(MIN_GRID_SIZE, Math.min(MAX_GRID_SIZE,
+                widthPx / PIXELS_PER_GRID_POINT + 1));
+    }
+
+    private static int halve(int gridSize) {
+        return (gridSize - 1) / 2 + 1;
+    }
+
+    /**
+     * @param gridSize size of the full grid, drawn by resting frames
+     */
+    public void setGridSize(int gridSize) {
+        if (gridSize == mGridSize) {
+            return;
+        }
+        mGridSize = gridSize;
+        mBudget = startBudget();
+        mSelection = new int[gridSize];
+        mCurvature = new double[gridSize];
+        mCount = 0;
+    }
+
+    private int minBudget() {
+        return Math.min(MIN_BUDGET, mGridSize);
+    }
+
+    private int maxBudget() {
+        return Math.max(minBudget(), halve(mGridSize));
+    }
+
+    private int startBudget() {
+        return Math.max(minBudget(), halve(halve(mGridSize)));
+    }
+
+    public int getBudget() {
+        return mBudget;
+    }
+
+    /**
+     * @param animating whether the frame is part of an animation
+     * @return size of the grid to evaluate the response on for the next frame
+     */
+    public int getFrameGridSize(boolean animating) {
+        int size = mGridSize;
+        if (animating) {
+            while (size > 2 && halve(size) >= mBudget) {
+                size = halve(size);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Feed back the cost of the last frame.
+     *
+     * @param frameNanos time spent drawing the frame
+     * @param animating  whether the frame was part of an animation
+     */
+    public void onFrameRendered(long frameNanos, boolean animating) {
+        if (!animating) {
+            // start the next animation coarse, it grows from there if the device keeps up
+            mBudget = startBudget();
+            return;
+        }
+        if (frameNanos > FRAME_TARGET_NANOS) {
+            mBudget = mBudget * 3 / 4;
+        } else if (frameNanos < FRAME_TARGET_NANOS / 2) {
+            mBudget = mBudget * 5 / 4 + 1;
+        }
+        mBudget = Math.max(minBudget(), Math.min(maxBudget(), mBudget));
+    }
+
+    /**
+     * Choose the points to draw of a response curve.
+     *
+     * @param responseDb response over the grid of {@link #getFrameGridSize(boolean)} points
+     * @param animating  whether to honour the point budget or draw every grid point
+     * @return number of selected points, see {@link #getSelectedIndex(int)}
+     */
+    public int select(double[] responseDb, boolean animating) {
+        final int n = responseDb.length;
+        final int[] out = mSelection;
+        if (!animating || mBudget >= n || n < 3) {
+            for (int i = 0; i < n; i++) {
+                out[i] = i;
+            }
+            return mCount = n;
+        }
+
+        final double[] curvature = mCurvature;
+        double totalCurvature = 0;
+        for (int i = 1; i < n - 1; i++) {
+            final double c = Math.abs(responseDb[i - 1] - 2 * responseDb[i] + responseDb[i + 1]);
+            curvature[i] = c;
+            totalCurvature += c;
+        }
+
+        // each interior point carries half its weight uniformly and half by curvature
+        final int interior = n - 2;
+        final double uniform = 1.0 / interior;
+        final double curvatureScale = totalCurvature > 0 ? 1.0 / totalCurvature : 0;
+        final double totalWeight = totalCurvature > 0 ? 2.0 : 1.0;
+        final double step = totalWeight / (mBudget - 1);
+
+        int count = 0;
+        out[count++] = 0;
+        double acc = 0;
+        for (int i = 1; i < n - 1 && count < mBudget - 1; i++) {
+            acc += uniform + curvature[i] * curvatureScale;
+            if (acc >= step) {
+                out[count++] = i;
+                acc -= step;
+            }
+        }
+        out[count++] = n - 1;
+        return mCount = count;
+    }
+
+    public int getSelectedCount() {
+        return mCount;
+    }
+
+    /**
+     * @return grid index of the n-th selected point, in increasing order
+     */
+    public int getSelectedIndex(int n) {
+        return mSelection[n];
+    }
+}
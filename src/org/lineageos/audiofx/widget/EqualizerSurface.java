@@ -31,27 +31,40 @@ import android.graphics.Paint.Style;
 import android.graphics.Path;
 import android.graphics.Shader;
 import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
-import android.view.View;
 import android.view.animation.DecelerateInterpolator;
 
 import org.lineageos.audiofx.R;
+import org.lineageos.audiofx.eq.FrequencyAxis;
+
+/**
+ * Draws the EQ response curve and band bars into its own surface from a dedicated render thread.
+ * <p>
+ * The UI thread only mutates levels and requests frames; each request publishes a snapshot of
+ * the levels, axis and animation state, and the render thread picks up the latest snapshot on
+ * its next Choreographer frame. Curve computation therefore never runs on the main thread.
+ */
+public class EqualizerSurface extends SurfaceView implements ValueAnimator.AnimatorUpdateListener,
+        SurfaceHolder.Callback {
 
-import java.util.Arrays;
-
-public class EqualizerSurface extends SurfaceView implements ValueAnimator.AnimatorUpdateListener {
+    private static final String TAG = "EqualizerSurface";
+    private static final boolean DEBUG = false;
 
     private static final int SAMPLING_RATE = 44100;
 
+    // layout size, only touched by the UI thread
     private int mWidth;
     private int mHeight;
 
-    private float mMinFreq = 10;
-    private float mMaxFreq = 21000;
-
     private float mMinDB = -15;
     private float mMaxDB = 15;
 
@@ -59,19 +72,51 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
 
     private float[] mLevels = new float[mNumBands];
     private float[] mTargetLevels = new float[mNumBands];
-    private float[] mCenterFreqs = new float[mNumBands];
     private final Paint mWhite, mControlBarText, mControlBar;
     private final Paint mFrequencyResponseBg;
     private final Paint mFrequencyResponseHighlight, mFrequencyResponseHighlight2;
+    private final int[] mResponseColors;
 
     private BandUpdatedListener mBandUpdatedListener;
     int mBarWidth;
     int mTextSize;
     private ValueAnimator mAnimation;
 
+    private FrequencyAxis mAxis;
+    private final Path mFreqResponse = new Path();
+    private final Path mFreqResponseBg = new Path();
+
+    // snapshot handed to the render thread, guarded by mSnapshotLock
+    private final Object mSnapshotLock = new Object();
+    private float[] mSnapshotLevels = new float[0];
+    private FrequencyAxis mSnapshotAxis;
+    private boolean mSnapshotAnimating;
+    private int mSnapshotWidth;
+    private int mSnapshotHeight;
+    private float mSnapshotMinDB;
+    private float mSnapshotMaxDB;
+
+    // surface state, guarded by mSurfaceLock, which is held for a whole frame
+    private final Object mSurfaceLock = new Object();
+    private boolean mSurfaceValid;
+    private volatile RenderThread mRenderThread;
+
+    // only touched by the render thread
+    private float[] mRenderLevels = new float[0];
+    private int mRenderWidth;
+    private int mRenderHeight;
+    private float mRenderMinDB;
+    private float mRenderMaxDB;
+    // response over the full grid, and over the coarser grid animated frames evaluate
+    private final FrequencyResponse mResponse = new FrequencyResponse();
+    private final FrequencyResponse mAnimatedResponse = new FrequencyResponse();
+    private FrequencyAxis mAnimatedBase;
+    private final BandLabels mLabels = new BandLabels();
+    private final CurveSampler mSampler = new CurveSampler();
+
     public EqualizerSurface(Context context, AttributeSet attributeSet) {
         super(context, attributeSet);
-        setWillNotDraw(false);
+        getHolder().addCallback(this);
 
         mWhite = new Paint();
         mWhite.setColor(getResources().getColor(R.color.color_grey));
@@ -109,6 +154,22 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
         mFrequencyResponseHighlight2.setStrokeWidth(3);
         mFrequencyResponseHighlight2.setColor(getResources().getColor(R.color.freq_hl2));
         mFrequencyResponseHighlight2.setAntiAlias(true);
+
+        /**
+         * red > +7
+         * yellow > +3
+         * holo_blue_bright > 0
+         * holo_blue < 0
+         * holo_blue_dark < 3
+         */
+        final Resources res = getResources();
+        mResponseColors = new int[]{
+                res.getColor(R.color.eq_yellow),
+                res.getColor(R.color.eq_green),
+                res.getColor(R.color.eq_holo_bright),
+                res.getColor(R.color.eq_holo_blue),
+                res.getColor(R.color.eq_holo_dark)
+        };
     }
 
     /**
@@ -128,16 +189,22 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
     public void setBandLevelRange(float minDB, float maxDB) {
         mMinDB = minDB;
         mMaxDB = maxDB;
+        requestRender();
     }
 
     public void setCenterFreqs(float[] centerFreqsKHz) {
-        mNumBands = centerFreqsKHz.length;
+        setFrequencyAxis(new FrequencyAxis(centerFreqsKHz, SAMPLING_RATE));
+    }
+
+    /**
+     * @param axis the axis shared by the EQ views, see EqualizerManager#getFrequencyAxis(). The
+     *             surface samples on a grid derived from it for its width.
+     */
+    public void setFrequencyAxis(FrequencyAxis axis) {
+        mNumBands = axis.getNumBands();
         mLevels = new float[mNumBands];
-        mCenterFreqs = Arrays.copyOf(centerFreqsKHz, mNumBands);
-        System.arraycopy(centerFreqsKHz, 0, mCenterFreqs, 0, mNumBands);
-        mMinFreq = mCenterFreqs[0] / 2;
-        mMaxFreq = (float) Math.pow(mCenterFreqs[mNumBands - 1], 2) / mCenterFreqs[mNumBands - 2]
-                / 2;
+        mAxis = axis.withGridSize(CurveSampler.gridSizeForWidth(mWidth));
+        requestRender();
     }
 
     public float[] softCopyLevels() {
@@ -165,11 +232,151 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
     */
 
     @Override
-    protected void onAttachedToWindow() {
-        super.onAttachedToWindow();
+    public void surfaceCreated(SurfaceHolder holder) {
+        synchronized (mSurfaceLock) {
+            mSurfaceValid = true;
+        }
+        mRenderThread = new RenderThread();
+        mRenderThread.start();
+        requestRender();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // the surface must not be touched once we return, so wait for any frame in flight
+        synchronized (mSurfaceLock) {
+            mSurfaceValid = false;
+        }
+        if (mRenderThread != null) {
+            mRenderThread.quitSafely();
+            mRenderThread = null;
+        }
+    }
 
-        setLayerType(View.LAYER_TYPE_HARDWARE, null);
-        buildLayer();
+    /**
+     * Publish the current levels to the render thread and schedule a frame. Safe to call from
+     * any thread; several requests within one vsync are coalesced into a single frame.
+     */
+    private void requestRender() {
+        synchronized (mSnapshotLock) {
+            final float[] levels = mLevels;
+            if (mSnapshotLevels.length != levels.length) {
+                mSnapshotLevels = new float[levels.length];
+            }
+            System.arraycopy(levels, 0, mSnapshotLevels, 0, levels.length);
+            mSnapshotAxis = mAxis;
+            mSnapshotAnimating = mAnimating;
+            mSnapshotWidth = mWidth;
+            mSnapshotHeight = mHeight;
+            mSnapshotMinDB = mMinDB;
+            mSnapshotMaxDB = mMaxDB;
+        }
+        final RenderThread thread = mRenderThread;
+        if (thread != null) {
+            thread.scheduleFrame();
+        }
+    }
+
+    /**
+     * Runs on the render thread: take the latest snapshot and draw it into the surface.
+     */
+    private void renderFrame() {
+        final FrequencyAxis axis;
+        final boolean animating;
+        final int width;
+        final int height;
+        synchronized (mSnapshotLock) {
+            axis = mSnapshotAxis;
+            animating = mSnapshotAnimating;
+            width = mSnapshotWidth;
+            height = mSnapshotHeight;
+            mRenderMinDB = mSnapshotMinDB;
+            mRenderMaxDB = mSnapshotMaxDB;
+            if (mRenderLevels.length != mSnapshotLevels.length) {
+                mRenderLevels = new float[mSnapshotLevels.length];
+            }
+            System.arraycopy(mSnapshotLevels, 0, mRenderLevels, 0, mSnapshotLevels.length);
+        }
+        if (axis != null && axis != mResponse.getAxis()) {
+            mResponse.setAxis(axis);
+            mLabels.setCenterFreqs(axis.getCenterFreqs());
+            mSampler.setGridSize(axis.getGridSize());
+        }
+        if (width != mRenderWidth || height != mRenderHeight) {
+            updateLayout(width, height);
+        }
+
+        synchronized (mSurfaceLock) {
+            if (!mSurfaceValid) {
+                return;
+            }
+            final SurfaceHolder holder = getHolder();
+            Canvas canvas = null;
+            // before P, hardware canvases drop the shadow layers of the bars
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                canvas = holder.lockHardwareCanvas();
+            }
+            if (canvas == null) {
+                canvas = holder.lockCanvas();
+            }
+            if (canvas == null) {
+                return;
+            }
+            try {
+                final long start = System.nanoTime();
+                drawFrame(canvas, axis, mRenderLevels, animating);
+                mSampler.onFrameRendered(System.nanoTime() - start, animating);
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    private final class RenderThread extends HandlerThread implements Choreographer.FrameCallback {
+        private Handler mHandler;
+        private Choreographer mChoreographer;
+        private boolean mFrameScheduled;
+
+        private final Runnable mScheduleFrame = new Runnable() {
+            @Override
+            public void run() {
+                if (!mFrameScheduled) {
+                    mFrameScheduled = true;
+                    mChoreographer.postFrameCallback(RenderThread.this);
+                }
+            }
+        };
+
+        RenderThread() {
+            super("EqualizerSurface", Process.THREAD_PRIORITY_DISPLAY);
+        }
+
+        @Override
+        protected void onLooperPrepared() {
+            // Choreographer is per looper, so frames are delivered on this thread
+            mChoreographer = Choreographer.getInstance();
+        }
+
+        @Override
+        public synchronized void start() {
+            super.start();
+            mHandler = new Handler(getLooper());
+        }
+
+        void scheduleFrame() {
+            mHandler.post(mScheduleFrame);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameScheduled = false;
+            renderFrame();
+        }
     }
 
     /**
@@ -193,45 +400,35 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
 
-        final Resources res = getResources();
+        // the render thread picks the new size up with the next snapshot
         mWidth = right - left;
-//        mHeight = bottom - top + (int) mWhite.getTextSize();
         mHeight = bottom - top;
+        if (mAxis != null) {
+            mAxis = mAxis.withGridSize(CurveSampler.gridSizeForWidth(mWidth));
+        }
+        requestRender();
+    }
+
+    /**
+     * Runs on the render thread when the snapshot carries a new size.
+     */
+    private void updateLayout(int width, int height) {
+        mRenderWidth = width;
+//        mRenderHeight = bottom - top + (int) mWhite.getTextSize();
+        mRenderHeight = height;
 
-        /**
-         * red > +7
-         * yellow > +3
-         * holo_blue_bright > 0
-         * holo_blue < 0
-         * holo_blue_dark < 3
-         */
-        int[] responseColors = new int[]{
-                res.getColor(R.color.eq_yellow),
-                res.getColor(R.color.eq_green),
-                res.getColor(R.color.eq_holo_bright),
-                res.getColor(R.color.eq_holo_blue),
-                res.getColor(R.color.eq_holo_dark)
-        };
         float[] responsePositions = new float[]{
                 0, 0.2f, 0.45f, 0.6f, 1f
         };
 
-        mFrequencyResponseBg.setShader(new LinearGradient(0, 0, 0, mHeight - mTextSize,
-                responseColors, responsePositions, Shader.TileMode.CLAMP));
+        mFrequencyResponseBg.setShader(new LinearGradient(0, 0, 0, mRenderHeight - mTextSize,
+                mResponseColors, responsePositions, Shader.TileMode.CLAMP));
 
-        int[] barColors = new int[]{
-                res.getColor(R.color.cb_shader),
-                res.getColor(R.color.cb_shader_alpha)
-        };
-        float[] barPositions = new float[]{
-                0.95f, 1f
-        };
-
-//        mControlBar.setShader(new LinearGradient(0, 0, 0, mHeight - mTextSize,
+//        mControlBar.setShader(new LinearGradient(0, 0, 0, mRenderHeight - mTextSize,
 //                barColors, barPositions, Shader.TileMode.CLAMP));
     }
 
-    int mPasses = 140;
+    boolean mAnimating;
     float[] mStartLevels;
     float[] mDeltas;
 
@@ -255,16 +452,16 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
         mAnimation.addListener(new Animator.AnimatorListener() {
             @Override
             public void onAnimationStart(Animator animation) {
-                mPasses = 35;
+                mAnimating = true;
             }
 
             @Override
             public void onAnimationEnd(Animator animation) {
-                mPasses = 140;
+                mAnimating = false;
                 mLevels = mTargetLevels;
                 animation.removeAllListeners();
                 mAnimation = null;
-                invalidate();
+                requestRender();
             }
 
             @Override
@@ -294,26 +491,27 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
             float newValue = mDeltas[i] * fraction;
             mLevels[i] = mStartLevels[i] + newValue;
         }
-        invalidate();
+        requestRender();
     }
 
     public void setBand(int i, float value) {
         mLevels[i] = value;
-        postInvalidate();
+        requestRender();
     }
 
     public float getBand(int i) {
         return mLevels[i];
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
+    /**
+     * Draw one frame. Called on the render thread with mSurfaceLock held.
+     */
+    private void drawFrame(Canvas canvas, FrequencyAxis axis, float[] levels, boolean animating) {
         /* clear canvas */
         canvas.drawRGB(0, 0, 0);
 
-        Biquad[] biquads = new Biquad[mNumBands - 1];
-        for (int i = 0; i < (mNumBands - 1); i++) {
-            biquads[i] = new Biquad();
+        if (axis == null || levels.length != axis.getNumBands()) {
+            return;
         }
 
         /* The filtering is realized with 2nd order high shelf filters, and each band
@@ -321,32 +519,26 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
          * each filter is actually between the bands.
          *
          * 1st band has no previous band, so it's just a fixed gain.
+         *
+         * Only the shelves next to bands which changed since the last frame are recomputed,
+         * on the grid the sampler picked for this frame.
          */
-        double gain = Math.pow(10, mLevels[0] / 20);
-        for (int i = 0; i < biquads.length; i++) {
-            biquads[i].setHighShelf(mCenterFreqs[i], SAMPLING_RATE, mLevels[i + 1] - mLevels[i], 1);
-        }
-
-        Path freqResponse = new Path();
-        Complex[] zn = new Complex[biquads.length];
-//        final int passes = 140;
-        for (int i = 0; i < mPasses + 1; i++) {
-            double freq = reverseProjectX(i / (float) mPasses);
-            double omega = freq / SAMPLING_RATE * Math.PI * 2;
-            Complex z = new Complex(Math.cos(omega), Math.sin(omega));
-
-            /* Evaluate the response at frequency z */
-            /* Complex z1 = z.mul(gain); */
-            double lin = gain;
-            for (int j = 0; j < biquads.length; j++) {
-                zn[j] = biquads[j].evaluateTransfer(z);
-                lin *= zn[j].rho();
-            }
-
+        final CurveSampler sampler = mSampler;
+        final FrequencyResponse response =
+                responseForGrid(axis, sampler.getFrameGridSize(animating));
+        response.setLevels(levels);
+        response.update();
+
+        final Path freqResponse = mFreqResponse;
+        freqResponse.rewind();
+        final FrequencyAxis grid = response.getAxis();
+        final int count = sampler.select(response.getResponseDb(), animating);
+        for (int n = 0; n < count; n++) {
+            final int i = sampler.getSelectedIndex(n);
             /* Magnitude response, dB */
-            double dB = lin2dB(lin);
-            float x = projectX(freq) * mWidth;
-            float y = projectY(dB) * (mHeight);
+            double dB = response.getResponseDb(i);
+            float x = grid.getGridPosition(i) * mRenderWidth;
+            float y = projectRenderY(dB) * (mRenderHeight);
 
             /* Set starting point at first point */
             if (i == 0) {
@@ -356,11 +548,12 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
             }
         }
 
-        Path freqResponseBg = new Path();
+        final Path freqResponseBg = mFreqResponseBg;
+        freqResponseBg.rewind();
         freqResponseBg.addPath(freqResponse);
         freqResponseBg.offset(0, -4);
-        freqResponseBg.lineTo(mWidth, mHeight);
-        freqResponseBg.lineTo(0, mHeight);
+        freqResponseBg.lineTo(mRenderWidth, mRenderHeight);
+        freqResponseBg.lineTo(0, mRenderHeight);
         freqResponseBg.close();
         canvas.drawPath(freqResponseBg, mFrequencyResponseBg);
 
@@ -369,8 +562,8 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
 
         /* draw vertical lines */
 //        for (float freq = mMinFreq; freq < mMaxFreq;) {
-//            float x = projectX(freq) * mWidth;
-//            canvas.drawLine(x, 0, x, mHeight - 1, mGridLines);
+//            float x = projectX(freq) * mRenderWidth;
+//            canvas.drawLine(x, 0, x, mRenderHeight - 1, mGridLines);
 //            if (freq < 100) {
 //                freq += 10;
 //            } else if (freq < 1000) {
@@ -383,24 +576,23 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
 //        }
 
         /* draw horizontal lines */
-        for (float dB = mMinDB + 3; dB <= mMaxDB - 3; dB += 3) {
-            float y = projectY(dB) * mHeight;
-//            canvas.drawLine(0, y, mWidth - 1, y, mGridLines);
+        for (float dB = mRenderMinDB + 3; dB <= mRenderMaxDB - 3; dB += 3) {
+            float y = projectRenderY(dB) * mRenderHeight;
+//            canvas.drawLine(0, y, mRenderWidth - 1, y, mGridLines);
 //            canvas.drawText(String.format("%+d", (int)dB), 1, (y - 1), mWhite);
         }
 
-        for (int i = 0; i < mNumBands; i++) {
-            float freq = mCenterFreqs[i];
-            float x = projectX(freq) * mWidth;
-
-            float y = projectY(mLevels[i]) * (mHeight);
+        final BandLabels labels = mLabels;
+        for (int i = 0; i < levels.length; i++) {
+            float x = axis.getBandPosition(i) * mRenderWidth;
 
-            Log.i("eqsurface", i + " level: " + mLevels[i] + ", y: " + y);
+            float y = projectRenderY(levels[i]) * (mRenderHeight);
 
-            String frequencyText = String.format(freq < 1000 ? "%.0f" : "%.0fk",
-                    freq < 1000 ? freq : freq / 1000);
+            if (labels.setLevel(i, levels[i]) && DEBUG) {
+                Log.v(TAG, i + " level: " + levels[i] + ", y: " + y);
+            }
 
-            int targetHeight = (mHeight);
+            int targetHeight = (mRenderHeight);
 
             int halfX = mBarWidth / 2;
             if (y > targetHeight) {
@@ -410,11 +602,27 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
                 canvas.drawRect(x - halfX, y, x + halfX, targetHeight, mControlBar);
             }
 
-            canvas.drawText(frequencyText, x, mWhite.getTextSize(), mControlBarText);
-            canvas.drawText(String.format("%+1.1f", mLevels[i]), x, y - 1, mControlBarText);
+            canvas.drawText(labels.getFrequencyLabel(i), x, mWhite.getTextSize(), mControlBarText);
+            canvas.drawText(labels.getLevelChars(i), 0, labels.getLevelLength(i), x, y - 1,
+                    mControlBarText);
         }
     }
 
+    /**
+     * @return the response to evaluate on a grid of the given size, derived from axis
+     */
+    private FrequencyResponse responseForGrid(FrequencyAxis axis, int gridSize) {
+        if (gridSize == axis.getGridSize()) {
+            return mResponse;
+        }
+        final FrequencyAxis current = mAnimatedResponse.getAxis();
+        if (mAnimatedBase != axis || current.getGridSize() != gridSize) {
+            mAnimatedResponse.setAxis(axis.withGridSize(gridSize));
+            mAnimatedBase = axis;
+        }
+        return mAnimatedResponse;
+    }
+
     public void registerBandUpdatedListener(BandUpdatedListener listener) {
         mBandUpdatedListener = listener;
     }
@@ -449,28 +657,11 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
         return true;
     }
 
-    private float projectX(double freq) {
-        double pos = Math.log(freq);
-        double minPos = Math.log(mMinFreq);
-        double maxPos = Math.log(mMaxFreq);
-        return (float) ((pos - minPos) / (maxPos - minPos));
-    }
-
-    private double reverseProjectX(float pos) {
-        double minPos = Math.log(mMinFreq);
-        double maxPos = Math.log(mMaxFreq);
-        return Math.exp(pos * (maxPos - minPos) + minPos);
-    }
-
-    private float projectY(double dB) {
-        double pos = (dB - mMinDB) / (mMaxDB - mMinDB);
+    private float projectRenderY(double dB) {
+        double pos = (dB - mRenderMinDB) / (mRenderMaxDB - mRenderMinDB);
         return (float) (1 - pos);
     }
 
-    private double lin2dB(double rho) {
-        return rho != 0 ? Math.log(rho) / Math.log(10) * 20 : -99.9;
-    }
-
     /**
      * Find the closest control to given horizontal pixel for adjustment
      *
@@ -478,19 +669,9 @@ public class EqualizerSurface extends SurfaceView implements ValueAnimator.Anima
      * @return index of best match
      */
     public int findClosest(float px) {
-        int idx = 0;
-        float best = 1e9f;
-        for (int i = 0; i < mNumBands; i++) {
-            float freq = mCenterFreqs[i];
-            float cx = projectX(freq) * mWidth;
-            float distance = Math.abs(cx - px);
-
-            if (distance < best) {
-                idx = i;
-                best = distance;
-            }
+        if (mAxis == null || mWidth == 0) {
+            return 0;
         }
-
-        return idx;
+        return mAxis.findClosestBand(px / mWidth);
     }
 }
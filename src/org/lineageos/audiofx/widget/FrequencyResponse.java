@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.widget;
+
+import org.lineageos.audiofx.eq.FrequencyAxis;
+
+import java.util.Arrays;
+
+/**
+ * Frequency response of the high shelf cascade drawn by {@link EqualizerSurface}, cached over the
+ * sampling grid of a {@link FrequencyAxis}.
+ * <p>
+ * Every band after the first is realized as a high shelf whose gain is the difference to the
+ * previous band, so changing a single band only affects the shelves on either side of it. The dB
+ * contribution of each shelf is cached per grid point, and the curve is the sum of the cached
+ * contributions plus the fixed gain of the first band.
+ */
+public class FrequencyResponse {
+
+    private final Biquad mBiquad = new Biquad();
+
+    private FrequencyAxis mAxis;
+    private int mNumBands;
+    private float[] mLevels = new float[0];
+    private int mGridSize;
+
+    private double[][] mShelfDb = new double[0][];
+    private boolean[] mShelfDirty = new boolean[0];
+    private double[] mResponseDb = new double[0];
+    private boolean mResponseDirty;
+
+    /**
+     * Set the band configuration and sampling grid. Invalidates all cached contributions.
+     *
+     * @param axis the frequency axis to sample the response on
+     */
+    public void setAxis(FrequencyAxis axis) {
+        final boolean sameBands = mAxis != null && mNumBands == axis.getNumBands()
+                && Arrays.equals(mAxis.getCenterFreqs(), axis.getCenterFreqs());
+        mAxis = axis;
+        mNumBands = axis.getNumBands();
+        mGridSize = axis.getGridSize();
+        if (!sameBands) {
+            mLevels = new float[mNumBands];
+        }
+
+        final int shelves = Math.max(0, mNumBands - 1);
+        mShelfDb = new double[shelves][mGridSize];
+        mShelfDirty = new boolean[shelves];
+        Arrays.fill(mShelfDirty, true);
+        mResponseDb = new double[mGridSize];
+        mResponseDirty = true;
+    }
+
+    public FrequencyAxis getAxis() {
+        return mAxis;
+    }
+
+    /**
+     * Update a single band level. Only the shelves adjacent to the band are invalidated.
+     *
+     * @param band the band index
+     * @param dB   the new level in decibels
+     */
+    public void setLevel(int band, float dB) {
+        if (mLevels[band] == dB) {
+            return;
+        }
+        mLevels[band] = dB;
+        if (band > 0) {
+            mShelfDirty[band - 1] = true;
+        }
+        if (band < mShelfDirty.length) {
+            mShelfDirty[band] = true;
+        }
+        mResponseDirty = true;
+    }
+
+    /**
+     * Update all band levels, invalidating only the shelves whose levels actually changed.
+     *
+     * @param levels the new levels in decibels
+     */
+    public void setLevels(float[] levels) {
+        for (int i = 0; i < mNumBands; i++) {
+            setLevel(i, levels[i]);
+        }
+    }
+
+    /**
+     * Recompute dirty shelf contributions and the summed curve.
+     *
+     * @return whether the curve changed since the last call
+     */
+    public boolean update() {
+        if (!mResponseDirty) {
+            return false;
+        }
+
+        for (int i = 0; i < mShelfDirty.length; i++) {
+            if (mShelfDirty[i]) {
+                computeShelf(i);
+                mShelfDirty[i] = false;
+            }
+        }
+
+        final float baseGain = mNumBands > 0 ? mLevels[0] : 0;
+        Arrays.fill(mResponseDb, baseGain);
+        for (int i = 0; i < mShelfDb.length; i++) {
+            final double[] shelf = mShelfDb[i];
+            for (int j = 0; j < mGridSize; j++) {
+                mResponseDb[j] += shelf[j];
+            }
+        }
+
+        mResponseDirty = false;
+        return true;
+    }
+
+    private void computeShelf(int shelf) {
+        final double[] out = mShelfDb[shelf];
+        mBiquad.setHighShelf(mAxis.getCenterFreq(shelf), mAxis.getSamplingRate(),
+                mLevels[shelf + 1] - mLevels[shelf], 1);
+        mBiquad.evaluateMagnitudeSquared(mAxis.getGridCos(), mAxis.getGridSin(), out, mGridSize);
+        for (int i = 0; i < mGridSize; i++) {
+            // squared magnitude, so 10 * log10 gives the level in dB
+            out[i] = out[i] != 0 ? 10 * Math.log10(out[i]) : -99.9;
+        }
+    }
+
+    public int getGridSize() {
+        return mGridSize;
+    }
+
+    /**
+     * @return summed response at the grid point in dB, as of the last {@link #update()}
+     */
+    public double getResponseDb(int index) {
+        return mResponseDb[index];
+    }
+
+    /**
+     * @return summed response over the whole grid in dB. Must not be modified.
+     */
+    public double[] getResponseDb() {
+        return mResponseDb;
+    }
+}
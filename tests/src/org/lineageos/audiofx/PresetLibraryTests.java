@@ -0,0 +1,132 @@
+package org.lineageos.audiofx;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.lineageos.audiofx.eq.CurveFitter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+
+public class PresetLibraryTests {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+
+    private File mFile;
+    private PresetLibrary mLibrary;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("library", ".bin");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mLibrary != null) {
+            mLibrary.close();
+        }
+        mFile.delete();
+    }
+
+    private PresetLibrary write(String... names) throws Exception {
+        final PresetLibrary.Writer writer = new PresetLibrary.Writer(mFile, 3);
+        try {
+            for (int i = 0; i < names.length; i++) {
+                writer.add(names[i], new float[]{i, -i, 0.5f});
+            }
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+        mLibrary = PresetLibrary.open(mFile);
+        return mLibrary;
+    }
+
+    @Test
+    public void testSortedByName() throws Exception {
+        final PresetLibrary library = write("rock", "Jazz", "acoustic", "Pop");
+        Assert.assertEquals(4, library.size());
+        Assert.assertEquals(3, library.getNumBands());
+        Assert.assertEquals("acoustic", library.getName(0));
+        Assert.assertEquals("Jazz", library.getName(1));
+        Assert.assertEquals("Pop", library.getName(2));
+        Assert.assertEquals("rock", library.getName(3));
+
+        final Preset preset = library.get(1);
+        Assert.assertEquals("Jazz", preset.getName());
+        Assert.assertArrayEquals(new float[]{1, -1, 0.5f}, preset.getLevels(), 0);
+    }
+
+    @Test
+    public void testIndexOf() throws Exception {
+        final PresetLibrary library = write("a", "b", "c", "d", "e", "f", "g");
+        for (int i = 0; i < library.size(); i++) {
+            Assert.assertEquals(i, library.indexOf(library.getName(i)));
+        }
+        Assert.assertEquals(3, library.indexOf("D"));
+        Assert.assertEquals(-1, library.indexOf("zz"));
+    }
+
+    @Test
+    public void testLastDuplicateWins() throws Exception {
+        final PresetLibrary library = write("Flat", "Loud", "flat");
+        Assert.assertEquals(2, library.size());
+        Assert.assertEquals("flat", library.getName(0));
+        Assert.assertArrayEquals(new float[]{2, -2, 0.5f}, library.get(0).getLevels(), 0);
+    }
+
+    @Test
+    public void testUncommittedWriterKeepsLibrary() throws Exception {
+        write("kept");
+        final PresetLibrary.Writer writer = new PresetLibrary.Writer(mFile, 3);
+        writer.add("lost", new float[3]);
+        writer.close();
+
+        mLibrary.close();
+        mLibrary = PresetLibrary.open(mFile);
+        Assert.assertEquals(1, mLibrary.size());
+        Assert.assertEquals("kept", mLibrary.getName(0));
+        Assert.assertFalse(new File(mFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testParseLine() {
+        final PresetImporter importer = new PresetImporter(null);
+        Assert.assertEquals("Say \"hi\", you",
+                importer.parseLine("\"Say \"\"hi\"\", you\" , 1000, -2, 100, 3"));
+        Assert.assertArrayEquals(new float[]{100, 1000}, importer.getParsedFreqs(), 0);
+        Assert.assertArrayEquals(new float[]{3, -2}, importer.getParsedGains(), 0);
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        final String input = "# name, points\n"
+                + "Flat, 100, 0, 1000, 0, 10000, 0\n"
+                + "\n"
+                + "Broken, 100\n"
+                + "Bad number, 100, loud\n"
+                + "Bass, 30, 6, 60, 6, 230, 0, 910, 0, 3600, 0, 14000, 0\n";
+        final PresetImporter importer = new PresetImporter(
+                new CurveFitter(CENTER_FREQS, 44100, -15, 15));
+        final PresetLibrary.Writer writer = new PresetLibrary.Writer(mFile, CENTER_FREQS.length);
+        try {
+            Assert.assertEquals(2, importer.importPresets(
+                    new BufferedReader(new StringReader(input)), writer));
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+        Assert.assertEquals(2, importer.getSkipped());
+
+        mLibrary = PresetLibrary.open(mFile);
+        Assert.assertEquals(2, mLibrary.size());
+        Assert.assertArrayEquals(new float[5], mLibrary.get(mLibrary.indexOf("flat")).getLevels(),
+                0.01f);
+        final float[] bass = mLibrary.get(mLibrary.indexOf("Bass")).getLevels();
+        Assert.assertTrue(bass[0] > 3);
+        Assert.assertEquals(0, bass[4], 0.5f);
+    }
+}
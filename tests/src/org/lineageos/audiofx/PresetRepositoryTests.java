@@ -0,0 +1,156 @@
+package org.lineageos.audiofx;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PresetRepositoryTests {
+
+    private File mStoreFile;
+    private File mLibraryFile;
+    private PresetStore mStore;
+    private PresetLibrary mLibrary;
+    private PresetRepository mRepository;
+
+    @Before
+    public void setUp() throws Exception {
+        mStoreFile = File.createTempFile("presets", ".bin");
+        mStoreFile.delete();
+        mLibraryFile = File.createTempFile("library", ".bin");
+        mLibraryFile.delete();
+
+        mStore = new PresetStore(mStoreFile);
+        final List<Preset> user = new ArrayList<Preset>();
+        for (int i = 0; i < 20; i++) {
+            user.add(new Preset.CustomPreset("Custom " + (i + 2), new float[]{i, 0, 0}, false));
+        }
+        mStore.save(user);
+
+        final PresetLibrary.Writer writer = new PresetLibrary.Writer(mLibraryFile, 3);
+        try {
+            writer.add("Imported B", new float[]{1, 1, 1});
+            writer.add("Imported A", new float[]{2, 2, 2});
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+        mLibrary = PresetLibrary.open(mLibraryFile);
+
+        mRepository = new PresetRepository(fixed(), mStore, mLibrary, 3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mStore.close();
+        mLibrary.close();
+        mStoreFile.delete();
+        mLibraryFile.delete();
+    }
+
+    private static List<Preset> fixed() {
+        final List<Preset> fixed = new ArrayList<Preset>();
+        fixed.add(new Preset.StaticPreset("Normal", new float[]{3, 0, 3}));
+        fixed.add(new Preset.PermCustomPreset("Custom", new float[3]));
+        return fixed;
+    }
+
+    @Test
+    public void testSections() {
+        Assert.assertEquals(24, mRepository.size());
+        Assert.assertEquals(20, mRepository.getUserPresetCount());
+        Assert.assertFalse(mRepository.isUserPreset(1));
+        Assert.assertTrue(mRepository.isUserPreset(2));
+        Assert.assertTrue(mRepository.isUserPreset(21));
+        Assert.assertTrue(mRepository.isImportedPreset(22));
+
+        Assert.assertEquals("Custom", mRepository.getName(1));
+        Assert.assertEquals("Custom 3", mRepository.getName(3));
+        Assert.assertEquals("Imported A", mRepository.getName(22));
+        Assert.assertArrayEquals(new float[]{1, 0, 0}, mRepository.get(3).getLevels(), 0);
+        Assert.assertArrayEquals(new float[]{1, 1, 1}, mRepository.get(23).getLevels(), 0);
+    }
+
+    @Test
+    public void testCachedAndEvicted() {
+        final Preset preset = mRepository.get(5);
+        Assert.assertSame(preset, mRepository.get(5));
+        Assert.assertEquals(5, mRepository.indexOf(preset));
+
+        for (int i = 6; i < 6 + PresetRepository.CACHE_SIZE; i++) {
+            mRepository.get(i);
+        }
+        // evicted, but still found where it is
+        Assert.assertEquals(5, mRepository.indexOf(preset));
+        Assert.assertEquals(preset, mRepository.get(5));
+    }
+
+    @Test
+    public void testIndexOfFollowsAddAndRemove() {
+        final Preset user = mRepository.get(5);
+        final Preset imported = mRepository.get(23);
+        for (int i = 6; i < 6 + PresetRepository.CACHE_SIZE; i++) {
+            mRepository.get(i);
+        }
+        Assert.assertEquals(23, mRepository.indexOf(imported));
+
+        mRepository.add(new Preset.CustomPreset("Custom 22", new float[]{5, 5, 5}, false));
+        Assert.assertEquals(5, mRepository.indexOf(user));
+        Assert.assertEquals(24, mRepository.indexOf(imported));
+
+        Assert.assertTrue(mRepository.remove(2));
+        Assert.assertEquals(4, mRepository.indexOf(user));
+        Assert.assertEquals(23, mRepository.indexOf(imported));
+
+        Assert.assertTrue(mRepository.remove(4));
+        Assert.assertEquals(-1, mRepository.indexOf(user));
+
+        mRepository.setLibrary(null);
+        Assert.assertEquals(-1, mRepository.indexOf(imported));
+    }
+
+    @Test
+    public void testChangesSurviveEviction() throws Exception {
+        final Preset.CustomPreset preset = (Preset.CustomPreset) mRepository.get(4);
+        preset.setLevel(1, 7);
+        preset.setName("Renamed");
+        mRepository.setChanged(preset);
+
+        for (int i = 5; i < 5 + PresetRepository.CACHE_SIZE; i++) {
+            mRepository.get(i);
+        }
+        Assert.assertSame(preset, mRepository.get(4));
+        Assert.assertEquals("Renamed", mRepository.getName(4));
+        Assert.assertEquals(4, mRepository.indexOf(preset));
+
+        mRepository.save();
+        final PresetRepository reopened = new PresetRepository(fixed(), mStore, mLibrary, 3);
+        Assert.assertEquals(preset, reopened.get(4));
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        final int index = mRepository.add(
+                new Preset.CustomPreset("Custom 22", new float[]{5, 5, 5}, false));
+        Assert.assertEquals(22, index);
+        Assert.assertEquals("Imported A", mRepository.getName(23));
+
+        Assert.assertFalse(mRepository.remove(1));
+        Assert.assertFalse(mRepository.remove(23));
+        Assert.assertTrue(mRepository.remove(2));
+        Assert.assertEquals(24, mRepository.size());
+        Assert.assertEquals("Custom 3", mRepository.getName(2));
+        Assert.assertEquals("Custom 22", mRepository.getName(21));
+    }
+
+    @Test
+    public void testLibraryWithOtherBandsIsIgnored() {
+        final PresetRepository repository = new PresetRepository(fixed(), mStore, mLibrary, 5);
+        Assert.assertEquals(22, repository.size());
+        Assert.assertFalse(repository.isImportedPreset(21));
+    }
+}
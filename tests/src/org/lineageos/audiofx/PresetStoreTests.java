@@ -0,0 +1,197 @@
+package org.lineageos.audiofx;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PresetStoreTests {
+
+    private File mFile;
+    private PresetStore mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("presets", ".bin");
+        mFile.delete();
+        mStore = new PresetStore(mFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mStore.close();
+        mFile.delete();
+    }
+
+    private PresetStore reopen() throws Exception {
+        mStore.close();
+        mStore = new PresetStore(mFile);
+        return mStore;
+    }
+
+    private static List<Preset> presets(int count) {
+        final ArrayList<Preset> presets = new ArrayList<Preset>();
+        // predefined presets are never stored
+        presets.add(new Preset.PermCustomPreset("Custom", new float[]{0, 0, 0, 0, 0}));
+        for (int i = 0; i < count; i++) {
+            presets.add(new Preset.CustomPreset("Custom " + (i + 2),
+                    new float[]{i, -i, 1.5f, 0, 10}, i % 2 == 0));
+        }
+        return presets;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<Preset> saved = presets(3);
+        mStore.save(saved);
+
+        final List<Preset.CustomPreset> loaded = reopen().load();
+        Assert.assertEquals(3, loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            Assert.assertEquals(saved.get(i + 1), loaded.get(i));
+        }
+    }
+
+    @Test
+    public void testLevelsAreUpdatedInPlace() throws Exception {
+        final List<Preset> saved = presets(50);
+        mStore.save(saved);
+        final long length = mStore.getFileLength();
+
+        ((Preset.CustomPreset) saved.get(20)).setLevel(2, -7.5f);
+        ((Preset.CustomPreset) saved.get(30)).setLocked(true);
+        mStore.save(saved);
+        Assert.assertEquals(length, mStore.getFileLength());
+
+        final List<Preset.CustomPreset> loaded = reopen().load();
+        Assert.assertEquals(-7.5f, loaded.get(19).getLevel(2), 0);
+        Assert.assertTrue(loaded.get(29).isLocked());
+    }
+
+    @Test
+    public void testRenameAndRemoveKeepOrder() throws Exception {
+        mStore.save(presets(3));
+        final List<Preset> loaded = new ArrayList<Preset>(reopen().load());
+
+        ((Preset.CustomPreset) loaded.get(1)).setName("Renamed");
+        loaded.remove(0);
+        mStore.save(loaded);
+
+        final List<Preset.CustomPreset> reloaded = reopen().load();
+        Assert.assertEquals(2, reloaded.size());
+        Assert.assertEquals("Renamed", reloaded.get(0).getName());
+        Assert.assertEquals("Custom 4", reloaded.get(1).getName());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        final List<Preset> saved = presets(200);
+        mStore.save(saved);
+        final long length = mStore.getFileLength();
+
+        final List<Preset> kept = new ArrayList<Preset>(saved.subList(0, 11));
+        mStore.save(kept);
+        Assert.assertTrue(mStore.getFileLength() < length / 4);
+
+        final List<Preset.CustomPreset> loaded = reopen().load();
+        Assert.assertEquals(10, loaded.size());
+        Assert.assertEquals(kept.get(10), loaded.get(9));
+
+        // offsets must have followed the records
+        ((Preset.CustomPreset) kept.get(10)).setLevel(0, 3);
+        mStore.save(kept);
+        Assert.assertEquals(3, reopen().load().get(9).getLevel(0), 0);
+    }
+
+    @Test
+    public void testTornWriteIsDropped() throws Exception {
+        mStore.save(presets(2));
+        final long length = mStore.getFileLength();
+        mStore.close();
+
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.setLength(length - 3);
+        raf.close();
+
+        mStore = new PresetStore(mFile);
+        Assert.assertEquals(1, mStore.size());
+    }
+
+    @Test
+    public void testCorruptRecordIsCopiedAside() throws Exception {
+        mStore.save(presets(3));
+        final long length = mStore.getFileLength();
+        mStore.close();
+
+        // break the length of the second record
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.seek(PresetStore.HEADER_SIZE);
+        raf.seek(PresetStore.HEADER_SIZE + raf.readInt());
+        raf.writeInt(3);
+        raf.close();
+
+        mStore = new PresetStore(mFile);
+        Assert.assertEquals(1, mStore.size());
+
+        File backup = null;
+        for (File file : mFile.getParentFile().listFiles()) {
+            if (file.getName().startsWith(mFile.getName() + ".corrupt-")) {
+                Assert.assertNull(backup);
+                backup = file;
+            }
+        }
+        Assert.assertNotNull(backup);
+        Assert.assertEquals(length, backup.length());
+        backup.delete();
+    }
+
+    @Test
+    public void testRenameSurvivesCrashBeforeDelete() throws Exception {
+        final List<Preset> saved = presets(1);
+        mStore.save(saved);
+        ((Preset.CustomPreset) saved.get(1)).setName("Renamed");
+        mStore.save(saved);
+        mStore.close();
+
+        // undo the delete, as if the crash hit right after the append
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.seek(PresetStore.HEADER_SIZE + 8);
+        raf.writeByte(0);
+        raf.close();
+
+        mStore = new PresetStore(mFile);
+        final List<Preset.CustomPreset> loaded = mStore.load();
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertEquals("Renamed", loaded.get(0).getName());
+    }
+
+    @Test
+    public void testOverlongNameIsRejected() throws Exception {
+        mStore.save(presets(2));
+        final long length = mStore.getFileLength();
+
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            name.append('x');
+        }
+        final List<Preset> presets = presets(3);
+        ((Preset.CustomPreset) presets.get(3)).setName(name.toString());
+        try {
+            mStore.save(presets);
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            mStore.put(new Preset.CustomPreset(name.toString(), new float[5], false));
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        Assert.assertEquals(length, mStore.getFileLength());
+        Assert.assertEquals(2, reopen().size());
+    }
+}
@@ -0,0 +1,123 @@
+package org.lineageos.audiofx.dsp;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.lineageos.audiofx.eq.FrequencyAxis;
+import org.lineageos.audiofx.widget.FrequencyResponse;
+
+public class ShelfCascadeTests {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+    private static final float[] LEVELS = {3, -2, 4.5f, 0, -6};
+    private static final double SAMPLING_RATE = 48000;
+
+    private static float[] sine(double freq, int frames, int channels) {
+        final float[] buffer = new float[frames * channels];
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++) {
+                buffer[i * channels + c] =
+                        (float) (0.5 * Math.sin(2 * Math.PI * freq * i / SAMPLING_RATE));
+            }
+        }
+        return buffer;
+    }
+
+    private static double peak(float[] buffer, int from, int channel, int channels) {
+        double peak = 0;
+        for (int i = from * channels + channel; i < buffer.length; i += channels) {
+            peak = Math.max(peak, Math.abs(buffer[i]));
+        }
+        return peak;
+    }
+
+    @Test
+    public void testFlatLevelsPassThrough() {
+        final ShelfCascade cascade = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 2);
+        final float[] in = sine(1000, 512, 2);
+        final float[] out = new float[in.length];
+        cascade.process(in, 0, out, 0, 512);
+        Assert.assertArrayEquals(in, out, 0);
+    }
+
+    @Test
+    public void testMatchesDrawnResponse() {
+        final FrequencyResponse response = new FrequencyResponse();
+        response.setAxis(new FrequencyAxis(CENTER_FREQS, SAMPLING_RATE,
+                FrequencyAxis.DEFAULT_GRID_SIZE));
+        response.setLevels(LEVELS);
+        response.update();
+
+        final ShelfCascade cascade = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 1);
+        cascade.setLevels(LEVELS);
+
+        final double[] grid = response.getResponseDb();
+        for (int i = 0; i < grid.length; i += 10) {
+            final double freq = response.getAxis().getGridFrequency(i);
+            // enough periods for the lowest shelf to settle
+            final int frames = (int) (SAMPLING_RATE / 2 + 20 * SAMPLING_RATE / freq);
+            final float[] buffer = sine(freq, frames, 1);
+            cascade.reset();
+            cascade.process(buffer, 0, frames);
+
+            final double db = 20 * Math.log10(peak(buffer, frames / 2, 0, 1) / 0.5);
+            Assert.assertEquals("at " + freq + "Hz", grid[i], db, 0.05);
+        }
+    }
+
+    @Test
+    public void testBlockSizeDoesNotMatter() {
+        final int frames = 4096;
+        final float[] whole = sine(440, frames, 2);
+        final float[] blocks = whole.clone();
+
+        final ShelfCascade a = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 2);
+        a.setLevels(LEVELS);
+        a.process(whole, 0, frames);
+
+        final ShelfCascade b = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 2);
+        b.setLevels(LEVELS);
+        for (int frame = 0; frame < frames; frame += 100) {
+            b.process(blocks, frame * 2, Math.min(100, frames - frame));
+        }
+        Assert.assertArrayEquals(whole, blocks, 0);
+    }
+
+    @Test
+    public void testChannelsAreIndependent() {
+        final int frames = 4096;
+        final float[] buffer = sine(60, frames, 2);
+        // silence the right channel
+        for (int i = 1; i < buffer.length; i += 2) {
+            buffer[i] = 0;
+        }
+
+        final ShelfCascade cascade = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 2);
+        cascade.setLevels(LEVELS);
+        cascade.process(buffer, 0, frames);
+
+        Assert.assertTrue(peak(buffer, 0, 0, 2) > 0.1);
+        Assert.assertEquals(0, peak(buffer, 0, 1, 2), 0);
+    }
+
+    @Test
+    public void testTurningFlatDoesNotClick() {
+        final int frames = 1024;
+        final float[] a = sine(60, frames * 2, 1);
+        final float[] b = a.clone();
+
+        // b ends up a hair off flat, so its shelves never stop filtering
+        final ShelfCascade flat = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 1);
+        final ShelfCascade almostFlat = new ShelfCascade(CENTER_FREQS, SAMPLING_RATE, 1);
+        flat.setLevels(LEVELS);
+        almostFlat.setLevels(LEVELS);
+        flat.process(a, 0, frames);
+        almostFlat.process(b, 0, frames);
+
+        flat.setLevels(new float[5]);
+        almostFlat.setLevels(new float[]{0, 1e-4f, 0, 1e-4f, 0});
+        flat.process(a, frames, frames);
+        almostFlat.process(b, frames, frames);
+
+        Assert.assertArrayEquals(b, a, 1e-4f);
+    }
+}
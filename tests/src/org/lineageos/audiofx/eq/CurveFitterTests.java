@@ -0,0 +1,96 @@
+package org.lineageos.audiofx.eq;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.lineageos.audiofx.widget.FrequencyResponse;
+
+public class CurveFitterTests {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+    private static final double SAMPLING_RATE = 44100;
+
+    private CurveFitter mFitter;
+
+    @Before
+    public void setUp() throws Exception {
+        mFitter = new CurveFitter(CENTER_FREQS, SAMPLING_RATE, -15, 15);
+    }
+
+    private static float[] logFreqs(int count) {
+        final float[] freqs = new float[count];
+        for (int i = 0; i < count; i++) {
+            freqs[i] = (float) (20 * Math.pow(1000, i / (double) (count - 1)));
+        }
+        return freqs;
+    }
+
+    @Test
+    public void testRecoversDrawnCurve() {
+        final float[] levels = {4, -3, 2.5f, 6, -5};
+        final FrequencyAxis axis = new FrequencyAxis(CENTER_FREQS, SAMPLING_RATE, 128);
+        final FrequencyResponse response = new FrequencyResponse();
+        response.setAxis(axis);
+        response.setLevels(levels);
+        response.update();
+
+        final float[] freqs = new float[axis.getGridSize()];
+        final float[] target = new float[freqs.length];
+        for (int i = 0; i < freqs.length; i++) {
+            freqs[i] = (float) axis.getGridFrequency(i);
+            target[i] = (float) response.getResponseDb(i);
+        }
+
+        final float[] fitted = mFitter.solve(freqs, target);
+        Assert.assertArrayEquals(levels, fitted, 0.05f);
+    }
+
+    @Test
+    public void testFlatTarget() {
+        final float[] freqs = logFreqs(31);
+        final float[] fitted = mFitter.solve(freqs, new float[31]);
+        Assert.assertArrayEquals(new float[5], fitted, 0.001f);
+    }
+
+    @Test
+    public void testLevelsAreClamped() {
+        final float[] freqs = logFreqs(10);
+        final float[] target = new float[10];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = i < 5 ? 40 : -40;
+        }
+        for (float level : mFitter.solve(freqs, target)) {
+            Assert.assertTrue(level >= -15 && level <= 15);
+        }
+    }
+
+    @Test
+    public void testCachedResultIsACopy() {
+        final float[] freqs = logFreqs(31);
+        final float[] target = new float[31];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = (float) Math.sin(i / 5.0) * 6;
+        }
+
+        final float[] first = mFitter.fit(freqs, target);
+        first[0] = 100;
+        final float[] second = mFitter.fit(freqs, target);
+        Assert.assertArrayEquals(mFitter.solve(freqs, target), second, 0);
+    }
+
+    @Test
+    public void testCholeskySolve() {
+        // [4 2; 2 3] x = [2; 5] has x = [-0.5; 2]
+        final double[] a = {4, 0, 2, 3};
+        final double[] b = {2, 5};
+        Assert.assertTrue(CurveFitter.cholesky(a, 2));
+        CurveFitter.choleskySolve(a, 2, b);
+        Assert.assertEquals(-0.5, b[0], 1e-12);
+        Assert.assertEquals(2, b[1], 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnsortedFrequencies() {
+        mFitter.solve(new float[]{100, 50}, new float[]{0, 0});
+    }
+}
@@ -5,6 +5,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
 /**
  * Created by roman on 9/29/15.
  */
@@ -35,4 +39,91 @@ public class EqUtilTests {
         }
     }
 
+    @Test
+    public void testParseMatchesSplit() {
+        final String[] inputs = {
+                "0;0;0;0;0", "-1500;300.5;1.0E-4;+2;1500", "1.5;;", " 4.25 ;-0.01", "3.4028235E38",
+                "0.1;0.2;0.30000001192092896;12345.678"
+        };
+        for (String input : inputs) {
+            final String[] split = input.split(";");
+            final float[] parsed = new float[8];
+            Assert.assertEquals(split.length, EqUtils.parseBands(input, parsed));
+            for (int i = 0; i < split.length; i++) {
+                Assert.assertEquals(input, Float.parseFloat(split[i]), parsed[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testParseShorts() {
+        final short[] levels = new short[3];
+        Assert.assertEquals(3, EqUtils.parseBands("-1500.7;12;1499.9", levels));
+        Assert.assertArrayEquals(new short[]{-1500, 12, 1499}, levels);
+    }
+
+    @Test
+    public void testParseMatchesParseFloat() {
+        final Random random = new Random(42);
+        final float[] parsed = new float[1];
+        for (int n = 0; n < 200000; n++) {
+            final StringBuilder sb = new StringBuilder();
+            if (random.nextBoolean()) {
+                sb.append('-');
+            }
+            final int digits = 1 + random.nextInt(12);
+            final int point = random.nextInt(digits + 1);
+            for (int i = 0; i < digits; i++) {
+                if (i == point) {
+                    sb.append('.');
+                }
+                sb.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextInt(4) == 0) {
+                sb.append('E').append(random.nextInt(25) - 12);
+            }
+            assertParsesLikeParseFloat(sb.toString(), parsed);
+        }
+
+        // decimals close to halfway between two floats, where rounding twice goes wrong
+        for (int n = 0; n < 20000; n++) {
+            final float f = Float.intBitsToFloat(0x3c000000 + random.nextInt(0x0a000000));
+            final BigDecimal halfway = new BigDecimal(f).add(new BigDecimal(Math.nextUp(f)))
+                    .divide(BigDecimal.valueOf(2));
+            assertParsesLikeParseFloat(halfway.round(MathContext.DECIMAL64).toPlainString(),
+                    parsed);
+            assertParsesLikeParseFloat(halfway.round(MathContext.DECIMAL32).toPlainString(),
+                    parsed);
+        }
+        assertParsesLikeParseFloat("5.81710410118103", parsed);
+    }
+
+    private static void assertParsesLikeParseFloat(String input, float[] parsed) {
+        EqUtils.parseBands(input, parsed);
+        Assert.assertEquals(input, Float.floatToIntBits(Float.parseFloat(input)),
+                Float.floatToIntBits(parsed[0]));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseRejectsEmptyLevel() {
+        EqUtils.parseBands("1;;2", new float[3]);
+    }
+
+    @Test
+    public void testWriterMatchesFloatToString() {
+        final float[] levels = {0, -15, 1.5f, -0.25f, 10000, 1.1f, 0.05f, 1.0E-4f, 3.14159f};
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < levels.length; i++) {
+            if (i > 0) {
+                expected.append(';');
+            }
+            expected.append(levels[i]);
+        }
+        Assert.assertEquals(expected.toString(), EqUtils.floatLevelsToString(levels));
+
+        final float[] parsed = new float[levels.length];
+        EqUtils.parseBands(EqUtils.appendLevels(new StringBuilder(), levels), parsed);
+        Assert.assertArrayEquals(levels, parsed, 0);
+    }
+
 }
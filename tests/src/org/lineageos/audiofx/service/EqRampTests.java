@@ -0,0 +1,73 @@
+package org.lineageos.audiofx.service;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EqRampTests {
+
+    private EqRamp mRamp;
+
+    @Before
+    public void setUp() throws Exception {
+        mRamp = new EqRamp();
+        mRamp.reset(new float[]{0, 0, 0, 0, 0});
+    }
+
+    @Test
+    public void testRampsInSteps() {
+        mRamp.setTarget(2, 800);
+
+        float previous = 0;
+        for (int i = 1; i < EqRamp.STEPS; i++) {
+            Assert.assertTrue(mRamp.step());
+            Assert.assertTrue(mRamp.hasChanged(2));
+            Assert.assertFalse(mRamp.hasChanged(1));
+            Assert.assertTrue(mRamp.getLevel(2) > previous);
+            Assert.assertTrue(mRamp.getLevel(2) < 800);
+            previous = mRamp.getLevel(2);
+        }
+        Assert.assertFalse(mRamp.step());
+        Assert.assertEquals(800, mRamp.getLevel(2), 0);
+
+        // nothing left to send
+        mRamp.step();
+        Assert.assertFalse(mRamp.hasChanged(2));
+    }
+
+    @Test
+    public void testSupersededTargetsAreDropped() {
+        mRamp.setTarget(0, 300);
+        mRamp.step();
+        final float level = mRamp.getLevel(0);
+
+        // the drag goes on, only the latest target is ramped to, from where the band is
+        mRamp.setTarget(0, 600);
+        mRamp.setTarget(0, -400);
+        for (int i = 0; i < EqRamp.STEPS; i++) {
+            mRamp.step();
+            Assert.assertTrue(mRamp.getLevel(0) < level);
+        }
+        Assert.assertEquals(-400, mRamp.getLevel(0), 0);
+    }
+
+    @Test
+    public void testUnknownBandsJump() {
+        mRamp.reset(null);
+        mRamp.setTarget(1, 500);
+        Assert.assertFalse(mRamp.step());
+        Assert.assertTrue(mRamp.hasChanged(1));
+        Assert.assertEquals(500, mRamp.getLevel(1), 0);
+    }
+
+    @Test
+    public void testResetStopsRamp() {
+        mRamp.setTarget(3, 1000);
+        mRamp.step();
+        mRamp.reset(new float[]{0, 0, 0, 200, 0});
+
+        Assert.assertFalse(mRamp.step());
+        Assert.assertFalse(mRamp.hasChanged(3));
+        Assert.assertEquals(200, mRamp.getLevel(3), 0);
+    }
+}
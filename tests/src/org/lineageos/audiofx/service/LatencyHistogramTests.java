@@ -0,0 +1,53 @@
+package org.lineageos.audiofx.service;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class LatencyHistogramTests {
+
+    private LatencyHistogram mHistogram;
+
+    @Before
+    public void setUp() throws Exception {
+        mHistogram = new LatencyHistogram("test");
+    }
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(0, LatencyHistogram.bucketFor(0));
+        Assert.assertEquals(1, LatencyHistogram.bucketFor(1));
+        Assert.assertEquals(2, LatencyHistogram.bucketFor(3));
+        Assert.assertEquals(3, LatencyHistogram.bucketFor(4));
+        Assert.assertEquals(LatencyHistogram.NUM_BUCKETS - 1,
+                LatencyHistogram.bucketFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        // 90 samples of 100us, 10 of 10ms
+        for (int i = 0; i < 90; i++) {
+            mHistogram.record(100 * 1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            mHistogram.record(10 * 1000 * 1000);
+        }
+
+        Assert.assertEquals(100, mHistogram.getCount());
+        Assert.assertEquals(128, mHistogram.getPercentileMicros(0.5));
+        Assert.assertEquals(128, mHistogram.getPercentileMicros(0.9));
+        Assert.assertEquals(16384, mHistogram.getPercentileMicros(0.99));
+    }
+
+    @Test
+    public void testDump() {
+        mHistogram.record(1500 * 1000);
+
+        final StringWriter out = new StringWriter();
+        mHistogram.dump(new PrintWriter(out), "");
+        Assert.assertTrue(out.toString().startsWith("test: count=1 mean=1500us max=1500us"));
+    }
+}
@@ -0,0 +1,47 @@
+package org.lineageos.audiofx.widget;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+public class BandLabelsTests {
+
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+
+    private BandLabels mLabels;
+
+    @Before
+    public void setUp() throws Exception {
+        mLabels = new BandLabels();
+        mLabels.setCenterFreqs(CENTER_FREQS);
+    }
+
+    @Test
+    public void testFrequencyLabels() {
+        Assert.assertEquals("60", mLabels.getFrequencyLabel(0));
+        Assert.assertEquals("230", mLabels.getFrequencyLabel(1));
+        Assert.assertEquals("910", mLabels.getFrequencyLabel(2));
+        Assert.assertEquals("4k", mLabels.getFrequencyLabel(3));
+        Assert.assertEquals("14k", mLabels.getFrequencyLabel(4));
+    }
+
+    @Test
+    public void testLevelLabelsMatchFormat() {
+        for (int tenths = -150; tenths <= 150; tenths++) {
+            final float dB = tenths / 10f;
+            mLabels.setLevel(0, dB);
+            final String label = new String(mLabels.getLevelChars(0), 0,
+                    mLabels.getLevelLength(0));
+            Assert.assertEquals(String.format(Locale.US, "%+1.1f", dB), label);
+        }
+    }
+
+    @Test
+    public void testLevelOnlyRewrittenWhenDisplayedValueChanges() {
+        Assert.assertTrue(mLabels.setLevel(1, 3.01f));
+        Assert.assertFalse(mLabels.setLevel(1, 3.04f));
+        Assert.assertTrue(mLabels.setLevel(1, 3.06f));
+    }
+}
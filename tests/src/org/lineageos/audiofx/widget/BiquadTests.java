@@ -0,0 +1,49 @@
+package org.lineageos.audiofx.widget;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BiquadTests {
+
+    private static final double SAMPLING_RATE = 44100;
+
+    private Biquad mBiquad;
+
+    @Before
+    public void setUp() throws Exception {
+        mBiquad = new Biquad();
+        mBiquad.setHighShelf(910, SAMPLING_RATE, 6.5, 1);
+    }
+
+    @Test
+    public void testMagnitudeMatchesComplexEvaluation() {
+        for (double freq = 20; freq < 20000; freq *= 1.5) {
+            final double omega = freq / SAMPLING_RATE * Math.PI * 2;
+            final double cos = Math.cos(omega);
+            final double sin = Math.sin(omega);
+
+            final double rho = mBiquad.evaluateTransfer(new Complex(cos, sin)).rho();
+            Assert.assertEquals(rho * rho, mBiquad.evaluateMagnitudeSquared(cos, sin), 1e-9);
+        }
+    }
+
+    @Test
+    public void testBatchMatchesSingleEvaluation() {
+        final int count = 64;
+        final double[] cos = new double[count];
+        final double[] sin = new double[count];
+        for (int i = 0; i < count; i++) {
+            final double omega = Math.PI * i / count;
+            cos[i] = Math.cos(omega);
+            sin[i] = Math.sin(omega);
+        }
+
+        final double[] out = new double[count];
+        mBiquad.evaluateMagnitudeSquared(cos, sin, out, count);
+
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(mBiquad.evaluateMagnitudeSquared(cos[i], sin[i]), out[i], 0);
+        }
+    }
+}
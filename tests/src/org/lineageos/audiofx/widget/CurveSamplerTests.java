@@ -0,0 +1,92 @@
+package org.lineageos.audiofx.widget;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CurveSamplerTests {
+
+    private static final int GRID_SIZE = 201;
+
+    private CurveSampler mSampler;
+    private double[] mStep;
+
+    @Before
+    public void setUp() throws Exception {
+        mSampler = new CurveSampler();
+        mSampler.setGridSize(GRID_SIZE);
+
+        // flat, a smooth transition in the middle, flat again
+        mStep = new double[GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            mStep[i] = 6 * Math.tanh((i - GRID_SIZE / 2) / 4.0);
+        }
+    }
+
+    @Test
+    public void testGridSizeFollowsWidth() {
+        Assert.assertEquals(CurveSampler.MIN_GRID_SIZE, CurveSampler.gridSizeForWidth(0));
+        Assert.assertEquals(271, CurveSampler.gridSizeForWidth(1080));
+        Assert.assertEquals(CurveSampler.MAX_GRID_SIZE, CurveSampler.gridSizeForWidth(8000));
+    }
+
+    @Test
+    public void testRestingFrameUsesWholeGrid() {
+        Assert.assertEquals(GRID_SIZE, mSampler.select(mStep, false));
+    }
+
+    @Test
+    public void testBudgetShrinksOnSlowFrames() {
+        mSampler.onFrameRendered(CurveSampler.FRAME_TARGET_NANOS * 2, true);
+        Assert.assertTrue(mSampler.getBudget() < GRID_SIZE);
+
+        for (int i = 0; i < 100; i++) {
+            mSampler.onFrameRendered(CurveSampler.FRAME_TARGET_NANOS * 2, true);
+        }
+        Assert.assertEquals(CurveSampler.MIN_BUDGET, mSampler.getBudget());
+
+        mSampler.onFrameRendered(0, false);
+        Assert.assertEquals(51, mSampler.getBudget());
+    }
+
+    @Test
+    public void testBudgetPicksEvaluatedGrid() {
+        Assert.assertEquals(GRID_SIZE, mSampler.getFrameGridSize(false));
+        // animations start on a quarter of the grid
+        Assert.assertEquals(51, mSampler.getFrameGridSize(true));
+
+        for (int i = 0; i < 100; i++) {
+            mSampler.onFrameRendered(CurveSampler.FRAME_TARGET_NANOS * 2, true);
+        }
+        Assert.assertEquals(26, mSampler.getFrameGridSize(true));
+
+        // fast frames grow it back, but never past half the grid
+        for (int i = 0; i < 100; i++) {
+            mSampler.onFrameRendered(0, true);
+        }
+        Assert.assertEquals(101, mSampler.getBudget());
+        Assert.assertEquals(101, mSampler.getFrameGridSize(true));
+        Assert.assertEquals(GRID_SIZE, mSampler.getFrameGridSize(false));
+    }
+
+    @Test
+    public void testSelectionFavoursTransitions() {
+        for (int i = 0; i < 5; i++) {
+            mSampler.onFrameRendered(CurveSampler.FRAME_TARGET_NANOS * 2, true);
+        }
+        final int count = mSampler.select(mStep, true);
+        Assert.assertTrue(count <= mSampler.getBudget());
+        Assert.assertEquals(0, mSampler.getSelectedIndex(0));
+        Assert.assertEquals(GRID_SIZE - 1, mSampler.getSelectedIndex(count - 1));
+
+        int middle = 0;
+        for (int n = 1; n < count; n++) {
+            Assert.assertTrue(mSampler.getSelectedIndex(n) > mSampler.getSelectedIndex(n - 1));
+            if (Math.abs(mSampler.getSelectedIndex(n) - GRID_SIZE / 2) <= GRID_SIZE / 10) {
+                middle++;
+            }
+        }
+        // the middle fifth of the grid holds the transition and gets well over a fifth of points
+        Assert.assertTrue(middle > count / 3);
+    }
+}
@@ -0,0 +1,54 @@
+package org.lineageos.audiofx.widget;
+
+import org.junit.Assert;
+import org.lineageos.audiofx.eq.FrequencyAxis;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrequencyResponseTests {
+
+    private static final double SAMPLING_RATE = 44100;
+    private static final float[] CENTER_FREQS = {60, 230, 910, 3600, 14000};
+
+    private FrequencyAxis mAxis;
+    private FrequencyResponse mResponse;
+
+    @Before
+    public void setUp() throws Exception {
+        mAxis = new FrequencyAxis(CENTER_FREQS, SAMPLING_RATE, 141);
+        mResponse = new FrequencyResponse();
+        mResponse.setAxis(mAxis);
+    }
+
+    @Test
+    public void testIncrementalUpdateMatchesFullEvaluation() {
+        mResponse.setLevels(new float[]{3, -2, 0, 4, 1});
+        mResponse.update();
+
+        // only touches the shelves around band 2
+        mResponse.setLevel(2, 5.5f);
+        Assert.assertTrue(mResponse.update());
+
+        final float[] levels = {3, -2, 5.5f, 4, 1};
+        final Biquad biquad = new Biquad();
+        for (int i = 0; i < mResponse.getGridSize(); i++) {
+            final double omega = mAxis.getGridFrequency(i) / SAMPLING_RATE * Math.PI * 2;
+            double dB = levels[0];
+            for (int j = 0; j < CENTER_FREQS.length - 1; j++) {
+                biquad.setHighShelf(CENTER_FREQS[j], SAMPLING_RATE, levels[j + 1] - levels[j], 1);
+                dB += 10 * Math.log10(
+                        biquad.evaluateMagnitudeSquared(Math.cos(omega), Math.sin(omega)));
+            }
+            Assert.assertEquals(dB, mResponse.getResponseDb(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void testUnchangedLevelsDoNotRecompute() {
+        mResponse.setLevels(new float[]{1, 2, 3, 4, 5});
+        mResponse.update();
+
+        mResponse.setLevels(new float[]{1, 2, 3, 4, 5});
+        Assert.assertFalse(mResponse.update());
+    }
+}
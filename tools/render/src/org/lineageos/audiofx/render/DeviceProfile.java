@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.render;
+
+import org.lineageos.audiofx.eq.EqUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * The parts of a device's preferences the renderer models, read from the XML file
+ * SharedPreferences keeps them in, e.g. shared_prefs/headset.xml pulled from a device.
+ */
+class DeviceProfile {
+
+    // keys and defaults as in org.lineageos.audiofx.Constants, which can't be built for the host
+    private static final String GLOBAL_ENABLE = "audiofx.global.enable";
+    private static final String EQ_PRESET_LEVELS = "audiofx.eq.preset.levels";
+    private static final String BASS_ENABLE = "audiofx.bass.enable";
+    private static final String BASS_STRENGTH = "audiofx.bass.strength";
+    private static final String TREBLE_ENABLE = "audiofx.treble.enable";
+    private static final String TREBLE_STRENGTH = "audiofx.treble.strength";
+    private static final String CENTER_FREQS = "equalizer.center_freqs";
+
+    /** What a stock Android equalizer reports, in Hz */
+    static final float[] DEFAULT_CENTER_FREQS = {60, 230, 910, 3600, 14000};
+
+    boolean globalEnabled;
+    float[] eqLevels;
+    boolean bassEnabled;
+    short bassStrength;
+    boolean trebleEnabled;
+    short trebleStrength;
+    float[] centerFreqs = DEFAULT_CENTER_FREQS;
+
+    /**
+     * @param devicePrefs the device preferences, e.g. headset.xml
+     * @param globalPrefs the global preferences with the band center frequencies, global.xml,
+     *                    or null for the stock bands
+     */
+    static DeviceProfile load(File devicePrefs, File globalPrefs) throws IOException {
+        final HashMap<String, String> device = readPrefs(devicePrefs);
+        final DeviceProfile profile = new DeviceProfile();
+        profile.globalEnabled = Boolean.parseBoolean(device.get(GLOBAL_ENABLE));
+        final String levels = device.get(EQ_PRESET_LEVELS);
+        if (levels != null) {
+            profile.eqLevels = EqUtils.stringBandsToFloats(levels);
+        }
+        profile.bassEnabled = Boolean.parseBoolean(device.get(BASS_ENABLE));
+        profile.bassStrength = parseShort(device.get(BASS_STRENGTH));
+        profile.trebleEnabled = Boolean.parseBoolean(device.get(TREBLE_ENABLE));
+        profile.trebleStrength = parseShort(device.get(TREBLE_STRENGTH));
+
+        if (globalPrefs != null) {
+            final String freqs = readPrefs(globalPrefs).get(CENTER_FREQS);
+            if (freqs != null) {
+                // stored in millihertz
+                final float[] centerFreqs = EqUtils.stringBandsToFloats(freqs);
+                for (int i = 0; i < centerFreqs.length; i++) {
+                    centerFreqs[i] /= 1000;
+                }
+                profile.centerFreqs = centerFreqs;
+            }
+        }
+
+        if (profile.eqLevels != null && profile.eqLevels.length != profile.centerFreqs.length) {
+            throw new IOException("profile has " + profile.eqLevels.length + " bands, expected "
+                    + profile.centerFreqs.length);
+        }
+        return profile;
+    }
+
+    private static short parseShort(String value) throws IOException {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Short.parseShort(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid strength: " + value, e);
+        }
+    }
+
+    /**
+     * @return every preference by name, with the values as strings
+     */
+    private static HashMap<String, String> readPrefs(File file) throws IOException {
+        final HashMap<String, String> prefs = new HashMap<String, String>();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(file, new DefaultHandler() {
+                private final StringBuilder mText = new StringBuilder();
+                private String mName;
+
+                @Override
+                public void startElement(String uri, String localName, String qName,
+                        Attributes attributes) {
+                    mName = attributes.getValue("name");
+                    mText.setLength(0);
+                    final String value = attributes.getValue("value");
+                    if (mName != null && value != null) {
+                        // <boolean>, <int>, <long> and <float> keep their value in an attribute
+                        prefs.put(mName, value);
+                    }
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    mText.append(ch, start, length);
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    if ("string".equals(qName) && mName != null) {
+                        prefs.put(mName, mText.toString());
+                    }
+                    mName = null;
+                }
+            });
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("unable to parse " + file, e);
+        }
+        return prefs;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("enabled=").append(globalEnabled);
+        sb.append(" eq=");
+        if (eqLevels != null) {
+            EqUtils.appendLevels(sb, eqLevels);
+        } else {
+            sb.append("flat");
+        }
+        sb.append(" bass=").append(bassEnabled ? bassStrength : 0);
+        sb.append(" treble=").append(trebleEnabled ? trebleStrength : 0);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.render;
+
+import org.lineageos.audiofx.dsp.BiquadFilter;
+import org.lineageos.audiofx.dsp.ShelfCascade;
+import org.lineageos.audiofx.widget.Biquad;
+
+/**
+ * Software model of the effects an EffectSet applies for a profile: the equalizer as drawn,
+ * then bass boost and treble boost as shelves. The platform bass boost and the treble effect
+ * are vendor implementations, so their shelves only approximate them; virtualizer and reverb
+ * are not modeled.
+ */
+class EffectChain {
+
+    // bass boost strength [0-1000] maps onto a low shelf
+    private static final double BASS_FREQ = 100;
+    private static final double BASS_MAX_DB = 15;
+
+    // treble boost strength [0-100] maps onto a high shelf
+    private static final double TREBLE_FREQ = 4000;
+    private static final double TREBLE_MAX_DB = 12;
+
+    private final boolean mEnabled;
+    private final ShelfCascade mEq;
+    private final BiquadFilter mBass;
+    private final BiquadFilter mTreble;
+
+    EffectChain(DeviceProfile profile, double samplingRate, int channels) {
+        mEnabled = profile.globalEnabled;
+
+        if (profile.eqLevels != null) {
+            mEq = new ShelfCascade(profile.centerFreqs, samplingRate, channels);
+            mEq.setLevels(profile.eqLevels);
+        } else {
+            mEq = null;
+        }
+
+        final Biquad biquad = new Biquad();
+        if (profile.bassEnabled && profile.bassStrength > 0) {
+            biquad.setLowShelf(BASS_FREQ, samplingRate,
+                    BASS_MAX_DB * profile.bassStrength / 1000, 1);
+            mBass = new BiquadFilter(channels);
+            mBass.setCoefficients(biquad);
+        } else {
+            mBass = null;
+        }
+
+        if (profile.trebleEnabled && profile.trebleStrength > 0) {
+            biquad.setHighShelf(TREBLE_FREQ, samplingRate,
+                    TREBLE_MAX_DB * profile.trebleStrength / 100, 1);
+            mTreble = new BiquadFilter(channels);
+            mTreble.setCoefficients(biquad);
+        } else {
+            mTreble = null;
+        }
+    }
+
+    /**
+     * Process a block of interleaved samples in place.
+     */
+    void process(float[] buffer, int frames) {
+        if (!mEnabled) {
+            // globally bypassed, like setGlobalEnabled(false)
+            return;
+        }
+        if (mEq != null) {
+            mEq.process(buffer, 0, frames);
+        }
+        if (mBass != null) {
+            mBass.process(buffer, 0, frames);
+        }
+        if (mTreble != null) {
+            mTreble.process(buffer, 0, frames);
+        }
+    }
+}
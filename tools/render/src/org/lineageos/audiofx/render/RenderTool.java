@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.render;
+
+import org.lineageos.audiofx.eq.EqUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Command line entry point of the offline renderer.
+ * <p>
+ * Applies a device profile to a WAV file the way AudioFX would, see {@link EffectChain}. Audio
+ * is streamed through in fixed-size blocks, so files of any length take the same memory.
+ *
+ * <pre>
+ * usage: AudioFXRender --profile DEVICE.xml [--global GLOBAL.xml] [--levels DB;DB;...]
+ *                      [--block FRAMES] [--float] IN.wav OUT.wav
+ * </pre>
+ */
+public class RenderTool {
+
+    private static final int DEFAULT_BLOCK_FRAMES = 4096;
+
+    private static void usage() {
+        System.err.println("usage: AudioFXRender --profile DEVICE.xml [--global GLOBAL.xml]"
+                + " [--levels DB;DB;...] [--block FRAMES] [--float] IN.wav OUT.wav");
+        System.err.println();
+        System.err.println("  --profile FILE   device preferences, e.g. shared_prefs/headset.xml");
+        System.err.println("  --global FILE    global preferences with the band frequencies");
+        System.err.println("  --levels LIST    override the profile's equalizer levels");
+        System.err.println("  --block FRAMES   frames per processed block (default "
+                + DEFAULT_BLOCK_FRAMES + ")");
+        System.err.println("  --float          write 32 bit float instead of the input format");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) {
+        String profileFile = null;
+        String globalFile = null;
+        String levels = null;
+        int blockFrames = DEFAULT_BLOCK_FRAMES;
+        boolean floatOutput = false;
+        String in = null;
+        String out = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if ("--profile".equals(arg)) {
+                    profileFile = args[++i];
+                } else if ("--global".equals(arg)) {
+                    globalFile = args[++i];
+                } else if ("--levels".equals(arg)) {
+                    levels = args[++i];
+                } else if ("--block".equals(arg)) {
+                    blockFrames = Integer.parseInt(args[++i]);
+                } else if ("--float".equals(arg)) {
+                    floatOutput = true;
+                } else if (arg.startsWith("--")) {
+                    usage();
+                } else if (in == null) {
+                    in = arg;
+                } else if (out == null) {
+                    out = arg;
+                } else {
+                    usage();
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            usage();
+        }
+        if (profileFile == null || in == null || out == null || blockFrames <= 0) {
+            usage();
+        }
+
+        try {
+            final DeviceProfile profile = DeviceProfile.load(new File(profileFile),
+                    globalFile != null ? new File(globalFile) : null);
+            if (levels != null) {
+                profile.globalEnabled = true;
+                profile.eqLevels = EqUtils.stringBandsToFloats(levels);
+                if (profile.eqLevels.length != profile.centerFreqs.length) {
+                    throw new IOException("--levels needs " + profile.centerFreqs.length
+                            + " bands");
+                }
+            }
+            render(profile, Paths.get(in), Paths.get(out), blockFrames, floatOutput);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("AudioFXRender: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static void render(DeviceProfile profile, Path in, Path out, int blockFrames,
+            boolean floatOutput) throws IOException {
+        try (WavReader reader = new WavReader(in, blockFrames)) {
+            final int channels = reader.getChannels();
+            final int sampleRate = reader.getSampleRate();
+            final EffectChain chain = new EffectChain(profile, sampleRate, channels);
+            final float[] block = new float[blockFrames * channels];
+
+            long frames = 0;
+            long clipped;
+            final long start = System.nanoTime();
+            try (WavWriter writer = floatOutput
+                    ? new WavWriter(out, WavReader.FORMAT_FLOAT, channels, sampleRate, 32,
+                            blockFrames)
+                    : new WavWriter(out, reader.getFormat(), channels, sampleRate,
+                            reader.getBitsPerSample(), blockFrames)) {
+                int read;
+                while ((read = reader.read(block)) > 0) {
+                    chain.process(block, read);
+                    writer.write(block, read);
+                    frames += read;
+                }
+                clipped = writer.getClippedSamples();
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            final double seconds = frames / (double) sampleRate;
+            System.out.println("profile: " + profile);
+            System.out.println(String.format(Locale.US,
+                    "rendered %.1fs of %d Hz, %d channels in %.1fs (%.0fx realtime)",
+                    seconds, sampleRate, channels, elapsed / 1e9,
+                    seconds / Math.max(elapsed / 1e9, 1e-9)));
+            if (clipped > 0) {
+                System.out.println("clipped samples: " + clipped);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.render;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the samples of a PCM or float WAV file block by block, converted to float.
+ */
+class WavReader implements Closeable {
+
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746d66;
+    private static final int DATA = 0x61746164;
+
+    static final int FORMAT_PCM = 1;
+    static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xfffe;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+
+    private int mFormat;
+    private int mChannels;
+    private int mSampleRate;
+    private int mBitsPerSample;
+    private int mBytesPerFrame;
+    private long mRemaining;
+
+    /**
+     * @param blockFrames the most frames a single {@link #read} returns
+     */
+    WavReader(Path path, int blockFrames) throws IOException {
+        mChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            readHeader();
+        } catch (IOException e) {
+            mChannel.close();
+            throw e;
+        }
+        mBuffer = ByteBuffer.allocateDirect(blockFrames * mBytesPerFrame)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void readHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 12);
+        if (header.getInt() != RIFF || header.getInt(8) != WAVE) {
+            throw new IOException("not a WAV file");
+        }
+
+        boolean haveFormat = false;
+        while (true) {
+            readFully(header, 8);
+            final int id = header.getInt();
+            final long size = header.getInt() & 0xffffffffL;
+            if (id == FMT) {
+                if (size < 16 || size > header.capacity()) {
+                    throw new IOException("unsupported fmt chunk of " + size + " bytes");
+                }
+                readFully(header, (int) size);
+                mFormat = header.getShort() & 0xffff;
+                mChannels = header.getShort() & 0xffff;
+                mSampleRate = header.getInt();
+                header.getInt(); // byte rate
+                mBytesPerFrame = header.getShort() & 0xffff;
+                mBitsPerSample = header.getShort() & 0xffff;
+                if (mFormat == FORMAT_EXTENSIBLE && size >= 26) {
+                    // the sub format GUID starts with the actual format tag
+                    mFormat = header.getShort(24) & 0xffff;
+                }
+                if (size % 2 != 0) {
+                    skip(1);
+                }
+                haveFormat = true;
+            } else if (id == DATA) {
+                if (!haveFormat) {
+                    throw new IOException("data chunk before fmt chunk");
+                }
+                // streaming writers leave the size at 0 or -1, read to the end then
+                final long available = mChannel.size() - mChannel.position();
+                mRemaining = size == 0 || size == 0xffffffffL ? available
+                        : Math.min(size, available);
+                break;
+            } else {
+                skip(size + (size % 2));
+            }
+        }
+
+        final boolean pcm = mFormat == FORMAT_PCM && (mBitsPerSample == 16
+                || mBitsPerSample == 24 || mBitsPerSample == 32);
+        final boolean floats = mFormat == FORMAT_FLOAT && mBitsPerSample == 32;
+        if (!pcm && !floats || mChannels == 0
+                || mBytesPerFrame != mChannels * mBitsPerSample / 8) {
+            throw new IOException("unsupported format " + mFormat + " with " + mChannels
+                    + " channels of " + mBitsPerSample + " bits");
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer) < 0) {
+                throw new EOFException("truncated WAV header");
+            }
+        }
+        buffer.flip();
+    }
+
+    private void skip(long bytes) throws IOException {
+        mChannel.position(mChannel.position() + bytes);
+    }
+
+    int getFormat() {
+        return mFormat;
+    }
+
+    int getChannels() {
+        return mChannels;
+    }
+
+    int getSampleRate() {
+        return mSampleRate;
+    }
+
+    int getBitsPerSample() {
+        return mBitsPerSample;
+    }
+
+    /**
+     * Read the next block, scaled to [-1, 1).
+     *
+     * @param out receives interleaved samples, room for a whole block
+     * @return number of frames read, 0 at the end of the data
+     */
+    int read(float[] out) throws IOException {
+        mBuffer.clear();
+        if (mBuffer.limit() > mRemaining) {
+            mBuffer.limit((int) mRemaining);
+        }
+        while (mBuffer.hasRemaining()) {
+            if (mChannel.read(mBuffer) < 0) {
+                break;
+            }
+        }
+        mBuffer.flip();
+        final int frames = mBuffer.remaining() / mBytesPerFrame;
+        mRemaining -= mBuffer.remaining();
+
+        final int samples = frames * mChannels;
+        if (mFormat == FORMAT_FLOAT) {
+            mBuffer.asFloatBuffer().get(out, 0, samples);
+        } else if (mBitsPerSample == 16) {
+            for (int i = 0; i < samples; i++) {
+                out[i] = mBuffer.getShort() / 32768f;
+            }
+        } else if (mBitsPerSample == 24) {
+            for (int i = 0; i < samples; i++) {
+                final int lo = mBuffer.get() & 0xff;
+                final int mid = mBuffer.get() & 0xff;
+                final int hi = mBuffer.get();
+                out[i] = ((hi << 16) | (mid << 8) | lo) / 8388608f;
+            }
+        } else {
+            for (int i = 0; i < samples; i++) {
+                out[i] = (float) (mBuffer.getInt() / 2147483648.0);
+            }
+        }
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
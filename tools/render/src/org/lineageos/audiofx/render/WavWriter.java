@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2026 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lineageos.audiofx.render;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams float samples into a 16, 24 or 32 bit PCM or 32 bit float WAV file block by block.
+ * The sizes in the header are filled in by {@link #close()}.
+ */
+class WavWriter implements Closeable {
+
+    private static final int HEADER_SIZE = 44;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final int mFormat;
+    private final int mChannels;
+    private final int mBitsPerSample;
+    private final int mBytesPerFrame;
+    private long mDataBytes;
+    private long mClipped;
+
+    /**
+     * @param format      {@link WavReader#FORMAT_PCM} or {@link WavReader#FORMAT_FLOAT}
+     * @param blockFrames the most frames a single {@link #write} takes
+     */
+    WavWriter(Path path, int format, int channels, int sampleRate, int bitsPerSample,
+            int blockFrames) throws IOException {
+        mFormat = format;
+        mChannels = channels;
+        mBitsPerSample = bitsPerSample;
+        mBytesPerFrame = channels * bitsPerSample / 8;
+        mChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952); // RIFF
+        header.putInt(0);
+        header.putInt(0x45564157); // WAVE
+        header.putInt(0x20746d66); // fmt
+        header.putInt(16);
+        header.putShort((short) format);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * mBytesPerFrame);
+        header.putShort((short) mBytesPerFrame);
+        header.putShort((short) bitsPerSample);
+        header.putInt(0x61746164); // data
+        header.putInt(0);
+        header.flip();
+        writeFully(header);
+
+        mBuffer = ByteBuffer.allocateDirect(blockFrames * mBytesPerFrame)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param samples interleaved samples in [-1, 1), clipped if integer output can't hold them
+     * @param frames  number of frames to write
+     */
+    void write(float[] samples, int frames) throws IOException {
+        mBuffer.clear();
+        final int count = frames * mChannels;
+        if (mFormat == WavReader.FORMAT_FLOAT) {
+            mBuffer.asFloatBuffer().put(samples, 0, count);
+            mBuffer.position(count * 4);
+        } else if (mBitsPerSample == 16) {
+            for (int i = 0; i < count; i++) {
+                mBuffer.putShort((short) quantize(samples[i], 32768));
+            }
+        } else if (mBitsPerSample == 24) {
+            for (int i = 0; i < count; i++) {
+                final int v = quantize(samples[i], 8388608);
+                mBuffer.put((byte) v);
+                mBuffer.put((byte) (v >> 8));
+                mBuffer.put((byte) (v >> 16));
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                mBuffer.putInt(quantize(samples[i], 2147483648.0));
+            }
+        }
+        mBuffer.flip();
+        mDataBytes += mBuffer.remaining();
+        writeFully(mBuffer);
+    }
+
+    private int quantize(float sample, double scale) {
+        final long v = Math.round(sample * scale);
+        if (v >= scale) {
+            mClipped++;
+            return (int) (scale - 1);
+        } else if (v < -scale) {
+            mClipped++;
+            return (int) -scale;
+        }
+        return (int) v;
+    }
+
+    /**
+     * @return how many samples had to be clipped so far
+     */
+    long getClippedSamples() {
+        return mClipped;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            final ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            // sizes beyond 4GB can't be represented, readers then go to the end of the file
+            size.putInt(0, (int) Math.min(0xffffffffL, HEADER_SIZE - 8 + mDataBytes));
+            mChannel.write(size, 4);
+            size.clear();
+            size.putInt(0, (int) Math.min(0xffffffffL, mDataBytes));
+            mChannel.write(size, HEADER_SIZE - 4);
+        } finally {
+            mChannel.close();
+        }
+    }
+}